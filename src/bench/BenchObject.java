@@ -0,0 +1,103 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package bench;
+
+import java.util.Random;
+
+import world.SimpleObject;
+
+/**
+ * A non-solid object that walks in one of four directions and turns when it
+ * collides. Objects can also stand still or wander randomly for a
+ * {@link Scenario}.
+ * 
+ * @author Brian Nakayama
+ */
+public class BenchObject extends SimpleObject {
+
+	private static final int[][] direction = { { 0, 6 }, { 6, 0 }, { 0, -6 },
+			{ -6, 0 } };
+	private int move;
+	private int pattern = Scenario.WALK;
+	private Random r;
+
+	/**
+	 * Create an object walking down, for SimpleWorldFactory.
+	 */
+	public BenchObject() {
+		this(0);
+	}
+
+	/**
+	 * Create an object walking in a direction.
+	 * 
+	 * @param move
+	 *            The starting direction [0-3].
+	 */
+	public BenchObject(int move) {
+		this.move = move;
+	}
+
+	/**
+	 * Create an object moving with a pattern from {@link Scenario}.
+	 * 
+	 * @param move
+	 *            The starting direction [0-3].
+	 * @param pattern
+	 *            STILL, WALK, or WANDER.
+	 * @param r
+	 *            The source of randomness for WANDER.
+	 */
+	public BenchObject(int move, int pattern, Random r) {
+		super(pattern == Scenario.STILL ? NO_UPDATES_NO_COLLIDES : NORMAL);
+		this.move = move;
+		this.pattern = pattern;
+		this.r = r;
+	}
+
+	@Override
+	public void collision(SimpleObject s) {
+		if (pattern == Scenario.WANDER) {
+			move = r.nextInt(4);
+		} else {
+			move = (move + 1) % 4;
+		}
+	}
+
+	@Override
+	public void update() {
+		// Non-solids are always updated once they are added to a map.
+		if (pattern == Scenario.STILL) {
+			return;
+		}
+		if (pattern == Scenario.WANDER && r.nextInt(16) == 0) {
+			move = r.nextInt(4);
+		}
+		move(direction[move][0], direction[move][1], true);
+	}
+
+	@Override
+	public int id() {
+		return 1;
+	}
+}
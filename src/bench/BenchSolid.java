@@ -0,0 +1,100 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package bench;
+
+import java.util.Random;
+
+import world.SimpleObject;
+import world.SimpleSolid;
+
+/**
+ * A solid that walks in one of four directions and turns when it collides.
+ * Solids can also stand still or wander randomly for a {@link Scenario}.
+ * 
+ * @author Brian Nakayama
+ */
+public class BenchSolid extends SimpleSolid {
+
+	private static final int[][] direction = { { 0, 2 }, { 2, 0 }, { 0, -2 },
+			{ -2, 0 } };
+	private int move;
+	private int pattern = Scenario.WALK;
+	private Random r;
+
+	/**
+	 * Create a solid that stands still.
+	 */
+	public BenchSolid() {
+		super(true);
+	}
+
+	/**
+	 * Create a solid walking in a direction.
+	 * 
+	 * @param move
+	 *            The starting direction [0-3].
+	 */
+	public BenchSolid(int move) {
+		super(false);
+		this.move = move;
+	}
+
+	/**
+	 * Create a solid moving with a pattern from {@link Scenario}.
+	 * 
+	 * @param move
+	 *            The starting direction [0-3].
+	 * @param pattern
+	 *            STILL, WALK, or WANDER.
+	 * @param r
+	 *            The source of randomness for WANDER.
+	 */
+	public BenchSolid(int move, int pattern, Random r) {
+		super(pattern == Scenario.STILL);
+		this.move = move;
+		this.pattern = pattern;
+		this.r = r;
+	}
+
+	@Override
+	public void collision(SimpleObject s) {
+		if (pattern == Scenario.WANDER) {
+			move = r.nextInt(4);
+		} else {
+			move = (move + 1) % 4;
+		}
+	}
+
+	@Override
+	public void update() {
+		if (pattern == Scenario.WANDER && r.nextInt(16) == 0) {
+			move = r.nextInt(4);
+		}
+		move(direction[move][0], direction[move][1], true);
+	}
+
+	@Override
+	public int id() {
+		return 0;
+	}
+}
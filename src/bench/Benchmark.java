@@ -0,0 +1,137 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package bench;
+
+/**
+ * A single timed operation. The operation is repeated for a fixed amount of
+ * time per iteration, first to warm up the JIT and then to take measurements,
+ * and the average time per operation of each measured iteration is recorded.
+ * 
+ * @author Brian Nakayama
+ * @see WorldBenchmarks
+ */
+public abstract class Benchmark {
+
+	// Results of every operation are folded in here so they aren't optimized
+	// away.
+	private static volatile long sink;
+
+	private final String name;
+
+	/**
+	 * Create a benchmark.
+	 * 
+	 * @param name
+	 *            The name printed with the results.
+	 */
+	public Benchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Override to build the state used by {@link #op(int)}. Called once
+	 * before the warm up.
+	 */
+	protected void setUp() {
+	}
+
+	/**
+	 * The operation to time.
+	 * 
+	 * @param i
+	 *            The number of times the operation has been called.
+	 * @return Any value depending on the work done.
+	 */
+	protected abstract long op(int i);
+
+	/**
+	 * Run the benchmark.
+	 * 
+	 * @param warmups
+	 *            The number of iterations to discard.
+	 * @param iterations
+	 *            The number of iterations to measure.
+	 * @param millis
+	 *            The length of each iteration in milliseconds.
+	 * @return The average nanoseconds per operation of each measured
+	 *         iteration.
+	 */
+	public double[] run(int warmups, int iterations, long millis) {
+		setUp();
+		double[] results = new double[iterations];
+		int count = 0;
+		long acc = 0;
+		for (int n = -warmups; n < iterations; n++) {
+			long ops = 0;
+			long start = System.nanoTime();
+			long end = start + millis * 1000000L;
+			long now;
+			do {
+				for (int b = 0; b < 64; b++) {
+					acc += op(count++);
+				}
+				ops += 64;
+			} while ((now = System.nanoTime()) < end);
+			if (n >= 0) {
+				results[n] = (now - start) / (double) ops;
+			}
+		}
+		sink += acc;
+		return results;
+	}
+
+	/**
+	 * Get the name of the benchmark.
+	 * 
+	 * @return The name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Format results as the mean, error (99.9% confidence), min and max in
+	 * nanoseconds per operation.
+	 * 
+	 * @param results
+	 *            The results of {@link #run(int, int, long)}.
+	 * @return A line for a table of results.
+	 */
+	public String format(double[] results) {
+		double sum = 0, min = Double.MAX_VALUE, max = 0;
+		for (double d : results) {
+			sum += d;
+			min = Math.min(min, d);
+			max = Math.max(max, d);
+		}
+		double mean = sum / results.length;
+		double var = 0;
+		for (double d : results) {
+			var += (d - mean) * (d - mean);
+		}
+		double error = results.length > 1 ? 3.29 * Math.sqrt(var
+				/ (results.length - 1) / results.length) : 0;
+		return String.format("%-40s %12.1f %10.1f %12.1f %12.1f", name, mean,
+				error, min, max);
+	}
+}
@@ -0,0 +1,159 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import world.SimpleCodec;
+import world.SimpleFactoryIO;
+import world.SimpleMap;
+import world.SimpleMapIO;
+import world.SimpleWorldFactory;
+
+/**
+ * Compares the codecs of {@link SimpleCodec} by saving and loading maps with
+ * each of them, and prints the size of each file with the time taken to save
+ * and load it.
+ * 
+ * Run from the command line with optional parameters, for example:
+ * 
+ * <pre>
+ * java bench.CodecBenchmarks factory=game.factory level1.map level2.map
+ * </pre>
+ * 
+ * <ul>
+ * <li>factory: The factory of the maps to load. Without one, a map is
+ * generated from a fixed seed.</li>
+ * <li>size: The width and height of the generated map in cells. (400)</li>
+ * <li>density: The fraction of cells holding an object. (0.4)</li>
+ * <li>version: The version of the map format to write. (2)</li>
+ * <li>iterations: The number of saves and loads timed for each codec, of
+ * which the fastest is printed. (5)</li>
+ * </ul>
+ * 
+ * Any other parameter is the path of a map.
+ * 
+ * @author Brian Nakayama
+ * @see SimpleMapIO#setCodec(SimpleCodec)
+ */
+public class CodecBenchmarks {
+
+	public static void main(String[] args) throws IOException {
+		SimpleWorldFactory swf = null;
+		List<File> maps = new ArrayList<File>();
+		int size = 400, iterations = 5, version = SimpleMapIO.VERSION_2;
+		double density = 0.4;
+
+		for (String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if (kv.length != 2) {
+				maps.add(new File(arg));
+			} else if (kv[0].equals("factory")) {
+				swf = SimpleFactoryIO.loadFactory(new File(kv[1]));
+			} else if (kv[0].equals("size")) {
+				size = Integer.parseInt(kv[1]);
+			} else if (kv[0].equals("density")) {
+				density = Double.parseDouble(kv[1]);
+			} else if (kv[0].equals("version")) {
+				version = Integer.parseInt(kv[1]);
+			} else if (kv[0].equals("iterations")) {
+				iterations = Integer.parseInt(kv[1]);
+			} else {
+				System.out.println("Ignoring parameter: " + arg);
+			}
+		}
+
+		SimpleCodec[] codecs = { SimpleCodec.NONE, SimpleCodec.FAST,
+				SimpleCodec.deflate(1), SimpleCodec.DEFAULT,
+				SimpleCodec.deflate(6), SimpleCodec.SMALL };
+
+		File tmp = File.createTempFile("codec", ".map");
+		tmp.deleteOnExit();
+		if (maps.isEmpty() || swf == null) {
+			if (!maps.isEmpty()) {
+				System.out.println("Maps need a factory=... parameter; "
+						+ "using a generated map.");
+			}
+			swf = new SimpleWorldFactory();
+			swf.register(new BenchSolid());
+			swf.register(new BenchObject());
+			SimpleMap m = new SimpleMap(size, size, WorldBenchmarks.CELL,
+					WorldBenchmarks.CELL);
+			int count = WorldBenchmarks.populate(m, (int) (density * size
+					* size), new Random(1));
+			System.out.println("Generated map: " + size + "x" + size + ", "
+					+ count + " objects");
+			run(m, swf, codecs, version, iterations, tmp);
+		} else {
+			for (File f : maps) {
+				SimpleMap m = SimpleMapIO.loadSimpleMap(f, swf);
+				if (m == null) {
+					System.out.println("Couldn't load " + f.getPath());
+					continue;
+				}
+				System.out.println(f.getPath() + ":");
+				run(m, swf, codecs, version, iterations, tmp);
+			}
+		}
+	}
+
+	private static void run(SimpleMap m, SimpleWorldFactory swf,
+			SimpleCodec[] codecs, int version, int iterations, File tmp) {
+		System.out.println(String.format("%-12s %12s %8s %10s %10s", "codec",
+				"bytes", "ratio", "save ms", "load ms"));
+		long raw = 0;
+		for (SimpleCodec c : codecs) {
+			long save = Long.MAX_VALUE, load = Long.MAX_VALUE;
+			// The first save and load warm up the codec.
+			for (int n = -1; n < iterations; n++) {
+				long start = System.nanoTime();
+				SimpleMapIO io = new SimpleMapIO(tmp, swf);
+				io.setCodec(c);
+				io.openMap(false);
+				boolean saved = io.writeMap(m, version);
+				io.closeMap();
+				long middle = System.nanoTime();
+				SimpleMap loaded = SimpleMapIO.loadSimpleMap(tmp, swf);
+				long end = System.nanoTime();
+				if (!saved || loaded == null) {
+					System.out.println("Error: " + c + " failed.");
+					return;
+				}
+				if (n >= 0) {
+					save = Math.min(save, middle - start);
+					load = Math.min(load, end - middle);
+				}
+			}
+			long length = tmp.length();
+			if (raw == 0) {
+				raw = length;
+			}
+			System.out.println(String.format("%-12s %12d %8.3f %10.2f %10.2f",
+					c, length, length / (double) raw, save / 1e6, load / 1e6));
+		}
+	}
+}
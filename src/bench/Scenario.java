@@ -0,0 +1,305 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+
+import desktopView.HeadlessCanvas;
+import world.SimpleMap;
+import world.SimpleWorld;
+
+/**
+ * A reproducible stress test for a headless SimpleWorld. A map is filled from
+ * a fixed seed with a mix of solids and non-solids, run for a number of
+ * frames, and a report is printed with the frame rate, the median and 99th
+ * percentile frame times, the allocation rate and the time spent in garbage
+ * collection.
+ * 
+ * Run a preset from the command line, optionally overriding its settings:
+ * 
+ * <pre>
+ * java bench.Scenario preset=dense ticks=2000 seed=7 size=200
+ * </pre>
+ * 
+ * The settings are preset, seed, ticks, warmup, size (cells per side),
+ * density (fraction of cells holding an object), solids (fraction of objects
+ * that are solids), still (fraction of solids that never move), layers (the
+ * number of z-indexes for non-solids), and pattern (still, walk or wander).
+ * 
+ * @author Brian Nakayama
+ * @see WorldBenchmarks
+ */
+public class Scenario {
+
+	// Movement patterns.
+	public static final int STILL = 0, WALK = 1, WANDER = 2;
+
+	private static final String[] PATTERNS = { "still", "walk", "wander" };
+
+	private static final String[] PRESETS = { "sparse", "dense", "wander",
+			"walls", "huge" };
+
+	private final String name;
+	private long seed = 42;
+	private int size, layers, pattern;
+	private double density, solids, still;
+
+	/**
+	 * Create a scenario.
+	 * 
+	 * @param name
+	 *            The name printed in the report.
+	 * @param size
+	 *            The width and height of the map in cells.
+	 * @param density
+	 *            The fraction of cells holding an object.
+	 * @param solids
+	 *            The fraction of objects that are solids.
+	 * @param still
+	 *            The fraction of solids that never move.
+	 * @param layers
+	 *            The number of z-indexes that non-solids are spread over.
+	 * @param pattern
+	 *            STILL, WALK, or WANDER.
+	 */
+	public Scenario(String name, int size, double density, double solids,
+			double still, int layers, int pattern) {
+		this.name = name;
+		this.size = size;
+		this.density = density;
+		this.solids = solids;
+		this.still = still;
+		this.layers = layers;
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Get one of the preset scenarios: sparse, dense, wander, walls or huge.
+	 * 
+	 * @param name
+	 *            The name of the preset.
+	 * @return The scenario, or null if there's no preset with that name.
+	 */
+	public static Scenario getPreset(String name) {
+		if (name.equals("sparse")) {
+			return new Scenario(name, 256, 0.05, 0.7, 0.0, 4, WALK);
+		} else if (name.equals("dense")) {
+			return new Scenario(name, 160, 0.6, 0.8, 0.0, 16, WALK);
+		} else if (name.equals("wander")) {
+			return new Scenario(name, 200, 0.3, 0.5, 0.0, 8, WANDER);
+		} else if (name.equals("walls")) {
+			return new Scenario(name, 256, 0.4, 0.9, 0.8, 2, WALK);
+		} else if (name.equals("huge")) {
+			return new Scenario(name, 1000, 0.1, 0.7, 0.5, 8, WANDER);
+		}
+		return null;
+	}
+
+	/**
+	 * Change the seed used to fill the map and move the objects.
+	 * 
+	 * @param seed
+	 *            The new seed.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Build the world described by this scenario.
+	 * 
+	 * @return A headless world.
+	 */
+	public SimpleWorld createWorld() {
+		Random r = new Random(seed);
+		SimpleMap m = new SimpleMap(size, size, WorldBenchmarks.CELL,
+				WorldBenchmarks.CELL);
+		int z = Math.max(1, Math.min(layers, 16));
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				if (r.nextDouble() >= density) {
+					continue;
+				}
+				int px = x * WorldBenchmarks.CELL, py = y * WorldBenchmarks.CELL;
+				if (r.nextDouble() < solids) {
+					int p = r.nextDouble() < still ? STILL : pattern;
+					m.addSimpleObject(new BenchSolid(r.nextInt(4), p, r), px, py);
+				} else {
+					m.addSimpleObject(new BenchObject(r.nextInt(4), pattern, r),
+							px, py, r.nextInt(z));
+				}
+			}
+		}
+		return new SimpleWorld(m, new HeadlessCanvas(800, 600));
+	}
+
+	/**
+	 * Build the world and run it as fast as possible.
+	 * 
+	 * @param warmup
+	 *            The number of frames to run before measuring.
+	 * @param ticks
+	 *            The number of frames to measure, at least one.
+	 * @return The report.
+	 * @throws IllegalArgumentException
+	 *             if ticks is less than one.
+	 */
+	public String run(int warmup, int ticks) {
+		if (ticks < 1) {
+			throw new IllegalArgumentException("ticks must be at least 1: "
+					+ ticks);
+		}
+		SimpleWorld w = createWorld();
+		for (int n = 0; n < warmup; n++) {
+			w.update();
+		}
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long allocated = allocatedBytes(threads);
+		long gcCount = 0, gcTime = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory
+				.getGarbageCollectorMXBeans()) {
+			gcCount -= Math.max(gc.getCollectionCount(), 0);
+			gcTime -= Math.max(gc.getCollectionTime(), 0);
+		}
+
+		long[] times = new long[ticks];
+		long start = System.nanoTime();
+		for (int n = 0; n < ticks; n++) {
+			long t = System.nanoTime();
+			w.update();
+			times[n] = System.nanoTime() - t;
+		}
+		long elapsed = System.nanoTime() - start;
+
+		allocated = allocatedBytes(threads) - allocated;
+		for (GarbageCollectorMXBean gc : ManagementFactory
+				.getGarbageCollectorMXBeans()) {
+			gcCount += Math.max(gc.getCollectionCount(), 0);
+			gcTime += Math.max(gc.getCollectionTime(), 0);
+		}
+		Arrays.sort(times);
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("scenario: ").append(name).append(" seed=").append(seed)
+				.append(" size=").append(size).append(" density=")
+				.append(density).append(" solids=").append(solids)
+				.append(" still=").append(still).append(" layers=")
+				.append(layers).append(" pattern=").append(PATTERNS[pattern])
+				.append('\n');
+		sb.append(String.format("ticks: %d%n", ticks));
+		sb.append(String.format("ticks/s: %.1f%n", ticks * 1e9 / elapsed));
+		sb.append(String.format("p50 tick: %.3f ms%n",
+				times[percentile(ticks, 50)] / 1e6));
+		sb.append(String.format("p99 tick: %.3f ms%n",
+				times[percentile(ticks, 99)] / 1e6));
+		sb.append(String.format("max tick: %.3f ms%n", times[ticks - 1] / 1e6));
+		if (allocated >= 0) {
+			sb.append(String.format("allocation: %.1f MB/s, %.0f B/tick%n",
+					allocated * 1e9 / elapsed / (1 << 20), allocated
+							/ (double) ticks));
+		} else {
+			sb.append("allocation: unavailable\n");
+		}
+		sb.append(String.format("gc: %d collections, %d ms%n", gcCount,
+				gcTime));
+		return sb.toString();
+	}
+
+	private static int percentile(int length, int p) {
+		return Math.max(0, Math.min(length - 1,
+				(int) Math.ceil(p / 100.0 * length) - 1));
+	}
+
+	/*
+	 * Bytes allocated by this thread, or -1 if the JVM can't tell.
+	 */
+	private static long allocatedBytes(ThreadMXBean threads) {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+			if (t.isThreadAllocatedMemorySupported()) {
+				return t.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	public static void main(String[] args) {
+		String preset = "dense";
+		int ticks = 1000, warmup = -1;
+		for (String arg : args) {
+			if (arg.startsWith("preset=")) {
+				preset = arg.substring(7);
+			}
+		}
+		Scenario s = getPreset(preset);
+		if (s == null) {
+			System.out.println("Unknown preset: " + preset + ", use one of "
+					+ Arrays.toString(PRESETS));
+			return;
+		}
+
+		for (String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if (kv.length != 2 || kv[0].equals("preset")) {
+				continue;
+			} else if (kv[0].equals("seed")) {
+				s.seed = Long.parseLong(kv[1]);
+			} else if (kv[0].equals("ticks")) {
+				ticks = Integer.parseInt(kv[1]);
+				if (ticks < 1) {
+					System.out.println("ticks must be at least 1: " + kv[1]);
+					return;
+				}
+			} else if (kv[0].equals("warmup")) {
+				warmup = Integer.parseInt(kv[1]);
+			} else if (kv[0].equals("size")) {
+				s.size = Integer.parseInt(kv[1]);
+			} else if (kv[0].equals("density")) {
+				s.density = Double.parseDouble(kv[1]);
+			} else if (kv[0].equals("solids")) {
+				s.solids = Double.parseDouble(kv[1]);
+			} else if (kv[0].equals("still")) {
+				s.still = Double.parseDouble(kv[1]);
+			} else if (kv[0].equals("layers")) {
+				s.layers = Integer.parseInt(kv[1]);
+			} else if (kv[0].equals("pattern")) {
+				s.pattern = Arrays.asList(PATTERNS).indexOf(kv[1]);
+				if (s.pattern < 0) {
+					System.out.println("Unknown pattern: " + kv[1]);
+					return;
+				}
+			} else {
+				System.out.println("Ignoring parameter: " + arg);
+			}
+		}
+		if (warmup < 0) {
+			warmup = ticks / 10;
+		}
+		System.out.print(s.run(warmup, ticks));
+	}
+}
@@ -0,0 +1,341 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import desktopView.HeadlessCanvas;
+import world.SimpleMap;
+import world.SimpleObject;
+import world.SimpleSolid;
+import world.SimpleWorld;
+
+/**
+ * Benchmarks for the hot paths of the world package: collision checks, each
+ * kind of SimpleSolid move, adding and removing objects, and full frames of a
+ * headless SimpleWorld.
+ * 
+ * Run from the command line with optional parameters, for example:
+ * 
+ * <pre>
+ * java bench.WorldBenchmarks size=160,320 density=0.1,0.4 iterations=10
+ * </pre>
+ * 
+ * <ul>
+ * <li>size: The width and height of the maps in cells. (160)</li>
+ * <li>density: The fraction of cells holding an object. (0.1,0.4,0.8)</li>
+ * <li>objects: A number of objects to use instead of a density.</li>
+ * <li>warmups, iterations, millis: The number and length of iterations.
+ * (5, 10, 500)</li>
+ * <li>filter: Only run benchmarks whose name contains this text.</li>
+ * </ul>
+ * 
+ * Maps are filled from a fixed seed, so results of different builds can be
+ * compared.
+ * 
+ * @author Brian Nakayama
+ * @see Benchmark
+ */
+public class WorldBenchmarks {
+
+	// The size of the cells in pixels.
+	static final int CELL = 20;
+
+	public static void main(String[] args) {
+		int[] sizes = { 160 };
+		double[] densities = { 0.1, 0.4, 0.8 };
+		int[] objects = null;
+		int warmups = 5, iterations = 10;
+		long millis = 500;
+		String filter = "";
+
+		for (String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if (kv.length != 2) {
+				System.out.println("Ignoring parameter: " + arg);
+				continue;
+			}
+			String[] values = kv[1].split(",");
+			if (kv[0].equals("size")) {
+				sizes = new int[values.length];
+				for (int n = 0; n < values.length; n++) {
+					sizes[n] = Integer.parseInt(values[n]);
+				}
+			} else if (kv[0].equals("density")) {
+				densities = new double[values.length];
+				for (int n = 0; n < values.length; n++) {
+					densities[n] = Double.parseDouble(values[n]);
+				}
+			} else if (kv[0].equals("objects")) {
+				objects = new int[values.length];
+				for (int n = 0; n < values.length; n++) {
+					objects[n] = Integer.parseInt(values[n]);
+				}
+			} else if (kv[0].equals("warmups")) {
+				warmups = Integer.parseInt(kv[1]);
+			} else if (kv[0].equals("iterations")) {
+				iterations = Integer.parseInt(kv[1]);
+			} else if (kv[0].equals("millis")) {
+				millis = Long.parseLong(kv[1]);
+			} else if (kv[0].equals("filter")) {
+				filter = kv[1];
+			} else {
+				System.out.println("Ignoring parameter: " + arg);
+			}
+		}
+
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(moveFree());
+		benchmarks.add(moveBlocked());
+		benchmarks.add(moveFuzz());
+		benchmarks.add(moveApprox());
+		for (int size : sizes) {
+			int[] counts = objects;
+			if (counts == null) {
+				counts = new int[densities.length];
+				for (int n = 0; n < densities.length; n++) {
+					counts[n] = (int) (densities[n] * size * size);
+				}
+			}
+			benchmarks.add(churnObject(size));
+			benchmarks.add(churnSolid(size));
+			for (int count : counts) {
+				benchmarks.add(calculateCollisions(size, count));
+				benchmarks.add(tick(size, count));
+			}
+		}
+
+		System.out.println(String.format("%-40s %12s %10s %12s %12s",
+				"benchmark", "ns/op", "error", "min", "max"));
+		for (Benchmark b : benchmarks) {
+			if (b.getName().contains(filter)) {
+				System.out.println(b.format(b.run(warmups, iterations, millis)));
+			}
+		}
+	}
+
+	/**
+	 * Fill a map with a mix of moving solids and non-solids on random
+	 * z-indexes. Two thirds of the objects are solids.
+	 * 
+	 * @param m
+	 *            The map to fill.
+	 * @param count
+	 *            The number of objects to add.
+	 * @param r
+	 *            The source of randomness.
+	 * @return The number of objects added. This may be less than count if
+	 *         the map is full.
+	 */
+	static int populate(SimpleMap m, int count, Random r) {
+		int width = m.getMapPixelWidth() / m.cellWidth + 1;
+		int height = m.getMapPixelHeight() / m.cellHeight + 1;
+		int added = 0;
+		for (int tries = 0; added < count && tries < count * 4; tries++) {
+			int x = r.nextInt(width) * m.cellWidth;
+			int y = r.nextInt(height) * m.cellHeight;
+			boolean ok;
+			if (r.nextInt(3) < 2) {
+				ok = m.addSimpleObject(new BenchSolid(r.nextInt(4)), x, y);
+			} else {
+				ok = m.addSimpleObject(new BenchObject(r.nextInt(4)), x, y,
+						r.nextInt(16));
+			}
+			if (ok) {
+				added++;
+			}
+		}
+		return added;
+	}
+
+	static Benchmark moveFree() {
+		return new Benchmark("SimpleSolid.move free") {
+			SimpleSolid s = new BenchSolid();
+
+			@Override
+			protected void setUp() {
+				new SimpleMap(16, 16, CELL, CELL).addSimpleObject(s, 100, 100);
+			}
+
+			@Override
+			protected long op(int i) {
+				return s.move((i & 1) == 0 ? 2 : -2, 0, true) ? 1 : 0;
+			}
+		};
+	}
+
+	static Benchmark moveBlocked() {
+		return new Benchmark("SimpleSolid.move blocked") {
+			SimpleSolid s = new BenchSolid();
+
+			@Override
+			protected void setUp() {
+				SimpleMap m = new SimpleMap(16, 16, CELL, CELL);
+				m.addSimpleObject(s, 100, 100);
+				m.addSimpleObject(new BenchSolid(), 120, 100);
+			}
+
+			@Override
+			protected long op(int i) {
+				return s.move(2, 0, true) ? 1 : 0;
+			}
+		};
+	}
+
+	static Benchmark moveFuzz() {
+		return new Benchmark("SimpleSolid.fuzzMove (+reset)") {
+			SimpleSolid s = new BenchSolid();
+
+			@Override
+			protected void setUp() {
+				SimpleMap m = new SimpleMap(16, 16, CELL, CELL);
+				m.addSimpleObject(s, 100, 112);
+				m.addSimpleObject(new BenchSolid(), 120, 100);
+			}
+
+			@Override
+			protected long op(int i) {
+				// Slides down around the corner of the other solid.
+				boolean moved = s.fuzzMove(2, 0, 4);
+				s.move(100, 112, false);
+				return moved ? 1 : 0;
+			}
+		};
+	}
+
+	static Benchmark moveApprox() {
+		return new Benchmark("SimpleSolid.approxMove (+reset)") {
+			SimpleSolid s = new BenchSolid();
+
+			@Override
+			protected void setUp() {
+				SimpleMap m = new SimpleMap(16, 16, CELL, CELL);
+				m.addSimpleObject(s, 90, 100);
+				m.addSimpleObject(new BenchSolid(), 120, 100);
+			}
+
+			@Override
+			protected long op(int i) {
+				// Stops next to the other solid.
+				boolean moved = s.approxMove(15, 0);
+				s.move(90, 100, false);
+				return moved ? 1 : 0;
+			}
+		};
+	}
+
+	static Benchmark churnObject(final int size) {
+		return new Benchmark("add/remove SimpleObject " + size + "^2") {
+			SimpleMap m = new SimpleMap(size, size, CELL, CELL);
+			SimpleObject o = new BenchObject(0);
+
+			@Override
+			protected void setUp() {
+				populate(m, size * size / 4, new Random(42));
+			}
+
+			@Override
+			protected long op(int i) {
+				m.addSimpleObject(o, 0, 0, i & 15);
+				return o.removeSelf() ? 1 : 0;
+			}
+		};
+	}
+
+	static Benchmark churnSolid(final int size) {
+		return new Benchmark("add/remove SimpleSolid " + size + "^2") {
+			SimpleMap m = new SimpleMap(size, size, CELL, CELL);
+			SimpleSolid s = new BenchSolid();
+			int x, y;
+
+			@Override
+			protected void setUp() {
+				populate(m, size * size / 4, new Random(42));
+				// Find a free cell in the middle of the map.
+				for (y = size / 2 * CELL; y < size * CELL; y += CELL) {
+					for (x = 0; x < size * CELL; x += CELL) {
+						if (m.addSimpleObject(s, x, y)) {
+							s.removeSelf();
+							return;
+						}
+					}
+				}
+			}
+
+			@Override
+			protected long op(int i) {
+				m.addSimpleObject(s, x, y);
+				return s.removeSelf() ? 1 : 0;
+			}
+		};
+	}
+
+	static Benchmark calculateCollisions(final int size, final int count) {
+		return new Benchmark("calculateCollisions " + size + "^2 n=" + count) {
+			SimpleMap m = new SimpleMap(size, size, CELL, CELL);
+			SimpleObject probe = new BenchObject(0);
+			int[] points = new int[2048];
+
+			@Override
+			protected void setUp() {
+				Random r = new Random(42);
+				populate(m, count, r);
+				for (int n = 0; n < points.length; n++) {
+					points[n] = r.nextInt(m.getMapPixelWidth() + 1);
+				}
+			}
+
+			@Override
+			protected long op(int i) {
+				int p = (i * 2) & (points.length - 1);
+				return m.calculateCollisions(points[p], points[p + 1], probe)[0] == null ? 0
+						: 1;
+			}
+		};
+	}
+
+	static Benchmark tick(final int size, final int count) {
+		return new Benchmark("SimpleWorld.update " + size + "^2 n=" + count) {
+			SimpleWorld w;
+
+			@Override
+			protected void setUp() {
+				SimpleMap m = new SimpleMap(size, size, CELL, CELL);
+				populate(m, count, new Random(42));
+				w = new SimpleWorld(m, new HeadlessCanvas(800, 600));
+				SimpleSolid cam = new BenchSolid(1);
+				if (m.addSimpleObject(cam, 0, 0)) {
+					w.setCameraStalk(cam);
+				}
+			}
+
+			@Override
+			protected long op(int i) {
+				w.update();
+				return 0;
+			}
+		};
+	}
+}
@@ -0,0 +1,9 @@
+/**
+ * 
+ */
+/**
+ * Contains headless benchmarks for the hot paths of the world package.
+ * @author Brian Nakayama
+ *
+ */
+package bench;
@@ -0,0 +1,211 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package clock;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A seedable source of random numbers for game logic. Use this class instead
+ * of Math.random() so that a game can be recorded and replayed exactly.
+ * 
+ * While recording, every number drawn is remembered until it is taken with
+ * {@link #takeDraws()}. While replaying, numbers are returned from a recording
+ * instead of being generated. The instance returned by {@link #getInstance()}
+ * is shared by the whole engine and can be replaced with
+ * {@link #setInstance(RandomSource)}.
+ * 
+ * @author Brian Nakayama
+ * @see world.SimpleReplay
+ */
+public class RandomSource {
+
+	private static volatile RandomSource instance = new RandomSource(
+			System.nanoTime());
+
+	private static final int NORMAL = 0, RECORDING = 1, REPLAYING = 2;
+
+	private final Random r;
+	private volatile int mode = NORMAL;
+	private double[] draws = new double[64];
+	private int size = 0, position = 0;
+	private boolean diverged = false;
+
+	/**
+	 * Create a source with a seed.
+	 * 
+	 * @param seed
+	 *            The seed.
+	 */
+	public RandomSource(long seed) {
+		r = new Random(seed);
+	}
+
+	/**
+	 * Get the shared source of random numbers.
+	 * 
+	 * @return The source.
+	 */
+	public static RandomSource getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Replace the shared source of random numbers.
+	 * 
+	 * @param r
+	 *            The new source.
+	 */
+	public static void setInstance(RandomSource r) {
+		if (r != null) {
+			instance = r;
+		}
+	}
+
+	/**
+	 * Reset the generator with a seed.
+	 * 
+	 * @param seed
+	 *            The seed.
+	 */
+	public void setSeed(long seed) {
+		r.setSeed(seed);
+	}
+
+	/**
+	 * Get a random number like Math.random().
+	 * 
+	 * @return A number in the range [0, 1).
+	 */
+	public double nextDouble() {
+		if (mode == NORMAL) {
+			return r.nextDouble();
+		}
+		return draw();
+	}
+
+	/**
+	 * Get a random integer.
+	 * 
+	 * @param n
+	 *            The bound.
+	 * @return A number in the range [0, n).
+	 */
+	public int nextInt(int n) {
+		return (int) (nextDouble() * n);
+	}
+
+	private synchronized double draw() {
+		double d;
+		if (mode == REPLAYING && position < size) {
+			d = draws[position];
+		} else {
+			if (mode == REPLAYING) {
+				diverged = true;
+			}
+			d = r.nextDouble();
+			if (mode == RECORDING) {
+				if (size == draws.length) {
+					draws = Arrays.copyOf(draws, size * 2);
+				}
+				draws[size++] = d;
+			}
+		}
+		position++;
+		return d;
+	}
+
+	/**
+	 * Remember every number drawn from now on.
+	 */
+	public synchronized void startRecording() {
+		size = 0;
+		position = 0;
+		diverged = false;
+		mode = RECORDING;
+	}
+
+	/**
+	 * Return the numbers in draws, in order, instead of generating them. Once
+	 * they run out numbers are generated again and the replay is marked as
+	 * diverged.
+	 * 
+	 * @param draws
+	 *            The numbers recorded.
+	 */
+	public synchronized void startReplay(double[] draws) {
+		this.draws = draws.clone();
+		size = draws.length;
+		position = 0;
+		diverged = false;
+		mode = REPLAYING;
+	}
+
+	/**
+	 * Stop recording or replaying.
+	 */
+	public synchronized void stop() {
+		mode = NORMAL;
+		draws = new double[64];
+		size = 0;
+	}
+
+	/**
+	 * Take the numbers drawn since recording started or since the last call.
+	 * 
+	 * @return The numbers in the order they were drawn.
+	 */
+	public synchronized double[] takeDraws() {
+		double[] d = Arrays.copyOf(draws, mode == RECORDING ? size : 0);
+		if (mode == RECORDING) {
+			size = 0;
+		}
+		return d;
+	}
+
+	/**
+	 * Get the number of draws since recording or replaying started.
+	 * 
+	 * @return The count.
+	 */
+	public synchronized int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Mark a replay as diverged, for example when a different number of draws
+	 * than recorded were made in a frame.
+	 */
+	public synchronized void diverge() {
+		diverged = true;
+	}
+
+	/**
+	 * Check if a replay asked for more numbers than were recorded.
+	 * 
+	 * @return True iff the replay no longer matches the recording.
+	 */
+	public synchronized boolean isDiverged() {
+		return diverged;
+	}
+}
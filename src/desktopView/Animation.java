@@ -78,7 +78,23 @@ public class Animation extends Anm implements Previewable{
 	@Override
 	public void drawSlide(int x, int y, ImgCanvas ic) {
 		BufferedImage rB = bI[i];
+		skipSlide();
+		((IDesktopCanvas)ic).drawImage(rB, x, y);
+	}
+
+	/**
+	 * Draws the current image without incrementing the index.
+	 */
+	@Override
+	public void drawStill(int x, int y, ImgCanvas ic) {
+		((IDesktopCanvas)ic).drawImage(bI[i], x, y);
+	}
 
+	/**
+	 * Increments the index of the array without drawing.
+	 */
+	@Override
+	public void skipSlide() {
 		if (cycle) {
 			if (i < bI.length - 1) {
 				i++;
@@ -87,8 +103,6 @@ public class Animation extends Anm implements Previewable{
 				i = 0;
 			}
 		}
-
-		((IDesktopCanvas)ic).drawImage(rB, x, y);
 	}
 
 	/**
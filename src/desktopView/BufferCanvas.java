@@ -0,0 +1,134 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package desktopView;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import sprite.Img;
+import sprite.ImgBuffer;
+import sprite.ImgUpload;
+
+/**
+ * An off screen desktop canvas that draws into a buffered image.
+ * 
+ * @author Brian Nakayama
+ */
+public class BufferCanvas implements IDesktopCanvas, ImgBuffer {
+
+	private final BufferedImage bi;
+	private final Graphics2D g;
+	// The clip set by setClip, or a negative width for the whole canvas.
+	private int clipX, clipY, clipWidth = -1, clipHeight;
+
+	/**
+	 * Create a transparent buffer.
+	 * 
+	 * @param width
+	 *            The width (in pixels) of the buffer.
+	 * @param height
+	 *            The height (in pixels) of the buffer.
+	 */
+	public BufferCanvas(int width, int height) {
+		bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		g = bi.createGraphics();
+	}
+
+	@Override
+	public void drawImage(BufferedImage bi, int x, int y) {
+		g.drawImage(bi, x, y, null);
+	}
+
+	@Override
+	public Img getImg() {
+		return new Sprite(bi);
+	}
+
+	@Override
+	public void dispose() {
+		g.dispose();
+	}
+
+	@Override
+	public int getWidth() {
+		return bi.getWidth();
+	}
+
+	@Override
+	public int getHeight() {
+		return bi.getHeight();
+	}
+
+	@Override
+	public void paint() {
+	}
+
+	@Override
+	public void fullScreen() {
+	}
+
+	@Override
+	public void windowScreen() {
+	}
+
+	@Override
+	public void setRotation(int degrees) {
+	}
+
+	@Override
+	public ImgUpload getImgUpload(String s) {
+		return DesktopImgUpload.getInstance(new File(s));
+	}
+
+	@Override
+	public ImgBuffer createBuffer(int width, int height) {
+		return new BufferCanvas(width, height);
+	}
+
+	@Override
+	public Img createPixelImg(int[] pixels, int width, int height) {
+		return Sprite.wrap(pixels, width, height);
+	}
+
+	@Override
+	public void setClip(int x, int y, int width, int height) {
+		g.setClip(x, y, width, height);
+		clipX = x;
+		clipY = y;
+		clipWidth = width;
+		clipHeight = height;
+	}
+
+	@Override
+	public int[] getClip(int[] bounds) {
+		if (clipWidth < 0) {
+			return IDesktopCanvas.super.getClip(bounds);
+		}
+		bounds[0] = clipX;
+		bounds[1] = clipY;
+		bounds[2] = clipWidth;
+		bounds[3] = clipHeight;
+		return bounds;
+	}
+}
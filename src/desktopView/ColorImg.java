@@ -75,6 +75,16 @@ public class ColorImg extends Img  implements Previewable{
 		((IDesktopCanvas)i).drawImage(bI, x, y);
 		iL.slideEnd();
 	}
+
+	@Override
+	public void drawStill(int x, int y, ImgCanvas i) {
+		((IDesktopCanvas)i).drawImage(bI, x, y);
+	}
+
+	@Override
+	public void skipSlide() {
+		iL.slideEnd();
+	}
 	
 	@Override
 	public int getWidth() {
@@ -91,4 +101,9 @@ public class ColorImg extends Img  implements Previewable{
 		return this;
 	}
 
+	@Override
+	public Img getTiledInstance(int width, int height) {
+		return Sprite.tile(bI, width, height);
+	}
+
 }
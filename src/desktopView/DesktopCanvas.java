@@ -39,6 +39,8 @@ import java.io.File;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 
+import sprite.Img;
+import sprite.ImgBuffer;
 import sprite.ImgUpload;
 
 /**
@@ -63,6 +65,8 @@ public class DesktopCanvas extends JFrame implements IDesktopCanvas {
 	Graphics2D buffer;
 	private Graphics g;
 	private int rotate = 0;
+	// The clip set by setClip, or a negative width for the whole canvas.
+	private int clipX, clipY, clipWidth = -1, clipHeight;
 
 	/**
 	 * Basic Desktop view for the game. Full Screen mode will try to change the
@@ -272,4 +276,35 @@ public class DesktopCanvas extends JFrame implements IDesktopCanvas {
 	public void setRotation(int degrees) {
 		this.rotate = degrees;
 	}
+
+	@Override
+	public ImgBuffer createBuffer(int width, int height) {
+		return new BufferCanvas(width, height);
+	}
+
+	@Override
+	public Img createPixelImg(int[] pixels, int width, int height) {
+		return Sprite.wrap(pixels, width, height);
+	}
+
+	@Override
+	public void setClip(int x, int y, int width, int height) {
+		buffer.setClip(x, y, width, height);
+		clipX = x;
+		clipY = y;
+		clipWidth = width;
+		clipHeight = height;
+	}
+
+	@Override
+	public int[] getClip(int[] bounds) {
+		if (clipWidth < 0) {
+			return IDesktopCanvas.super.getClip(bounds);
+		}
+		bounds[0] = clipX;
+		bounds[1] = clipY;
+		bounds[2] = clipWidth;
+		bounds[3] = clipHeight;
+		return bounds;
+	}
 }
@@ -26,22 +26,35 @@ import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystemNotFoundException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import javax.imageio.ImageIO;
 
+import metrics.EngineMetrics;
+import pack.AssetPack;
 import sprite.Img;
 import sprite.ImgUpload;
 import sprite.NullImg;
 
 /**
- * Loads all image files for a directory.
+ * Loads the image files of a directory, or of a directory of an
+ * {@link AssetPack}. Only the names of the images are read when an instance
+ * is created, and each image is decoded the first time it is asked for, or
+ * ahead of time by {@link #prefetch(String...)}.
  * 
  * For each directory there exists only one instance of ImgUpload as determined
  * by the getInstance method. For an example of how to use ImgUpload see
@@ -55,22 +68,18 @@ import sprite.NullImg;
 
 public class DesktopImgUpload implements ImgUpload{
 	private File f;
+	private AssetPack pack;
+	private String directory;
 	private static List<DesktopImgUpload> iuList = new LinkedList<DesktopImgUpload>();
-	private Map<String, Img> img = new HashMap<String, Img>();
+	private Map<String, Img> img = new ConcurrentHashMap<String, Img>();
+	// Decodes each image once, however many threads ask for it.
+	private Map<String, FutureTask<Img>> index = new HashMap<String, FutureTask<Img>>();
 
 	private FileFilter fs = new FileFilter() {
 
 		@Override
 		public boolean accept(File f) {
-			if (f.getAbsolutePath().endsWith(".jpg")) {
-				return true;
-			}
-
-			if (f.getAbsolutePath().endsWith(".png")) {
-				return true;
-			}
-
-			return false;
+			return isImage(f.getName());
 		}
 
 	};
@@ -83,59 +92,116 @@ public class DesktopImgUpload implements ImgUpload{
 		if (f.isDirectory()) {
 			File[] images = f.listFiles(fs);
 			for (int i = 0; i < images.length; i++) {
-				BufferedImage bI = null;
-				try {
-					bI = ImageIO.read(images[i]);
-				} catch (IOException ex) {
-					System.out.println("Could not read in the following file:"
-							+ images[i].getName());
-				}
-
-				File temp = new File(images[i].getAbsolutePath() + ".txt");
-				if (temp.exists()) {
-					try {
-						BufferedReader br = new BufferedReader(new FileReader(
-								temp));
-						String s[] = br.readLine().split(",");
-						int width = Integer.parseInt(s[0]);
-						int height = Integer.parseInt(s[1]);
-						int x_wid = bI.getWidth() / width;
-						int y_wid = bI.getHeight() / height;
-						BufferedImage[] bIA = new BufferedImage[width * height];
-
-						for (int x = 0; x < width; x++) {
-							for (int y = 0; y < height; y++) {
-								bIA[y * width + x] = bI.getSubimage(x * x_wid,
-										y * y_wid, x_wid, y_wid);
-							}
-						}
-						img.put(images[i].getName(), new Animation(bIA));
+				index(images[i].getName());
+			}
 
-						br.close();
-					} catch (Exception ex) {
-						System.out
-								.println("Could not read in this animation txt: "
-										+ temp.getName());
-					}
+		}
+		else {
+			throw new FileSystemNotFoundException("The directory requested does not exist!");
+		}
+	}
 
-				} else {
+	private DesktopImgUpload(AssetPack pack, String directory) {
+		this.f = pack.getFile();
+		this.pack = pack;
+		this.directory = directory;
+		for (String name : pack.list(directory)) {
+			if (isImage(name)) {
+				index(name);
+			}
+		}
+	}
 
-					img.put(images[i].getName(), new Sprite(bI));
-				}
+	private void index(final String name) {
+		index.put(name, new FutureTask<Img>(new Callable<Img>() {
+			@Override
+			public Img call() {
+				return load(name);
 			}
+		}));
+	}
 
+	private static boolean isImage(String name) {
+		return name.endsWith(".jpg") || name.endsWith(".png");
+	}
+
+	/*
+	 * Open a file of the directory or pack, or return null if it doesn't
+	 * exist.
+	 */
+	private InputStream open(String name) throws IOException {
+		if (pack != null) {
+			return pack.open(directory.length() == 0 ? name : directory + "/"
+					+ name);
 		}
-		else {
-			throw new FileSystemNotFoundException("The directory requested does not exist!");
+		File file = new File(f, name);
+		return file.exists() ? new FileInputStream(file) : null;
+	}
+
+	/*
+	 * Decode an image, and cut it into an animation if it has a text file.
+	 */
+	private Img load(String name) {
+		BufferedImage bI = null;
+		try {
+			InputStream is = open(name);
+			if (is == null) {
+				return null;
+			}
+			try {
+				bI = ImageIO.read(is);
+			} finally {
+				is.close();
+			}
+			if (bI != null) {
+				EngineMetrics.getInstance().imageLoaded();
+			}
+		} catch (IOException ex) {
+			System.out.println("Could not read in the following file:"
+					+ name);
+		}
+		if (bI == null) {
+			return null;
+		}
+
+		try {
+			InputStream txt = open(name + ".txt");
+			if (txt == null) {
+				return new Sprite(bI);
+			}
+			try {
+				BufferedReader br = new BufferedReader(new InputStreamReader(
+						txt, StandardCharsets.UTF_8));
+				String s[] = br.readLine().split(",");
+				int width = Integer.parseInt(s[0]);
+				int height = Integer.parseInt(s[1]);
+				int x_wid = bI.getWidth() / width;
+				int y_wid = bI.getHeight() / height;
+				BufferedImage[] bIA = new BufferedImage[width * height];
+
+				for (int x = 0; x < width; x++) {
+					for (int y = 0; y < height; y++) {
+						bIA[y * width + x] = bI.getSubimage(x * x_wid,
+								y * y_wid, x_wid, y_wid);
+					}
+				}
+				return new Animation(bIA);
+			} finally {
+				txt.close();
+			}
+		} catch (Exception ex) {
+			System.out.println("Could not read in this animation txt: "
+					+ name + ".txt");
 		}
+		return null;
 	}
 
 	/**
 	 * Creates an instance of ImgUpload if one doesn't exist for the file f.
 	 * 
 	 * If an instance already exists, this method will return that instance.
-	 * Every time an instance is created all of the image files in the directory
-	 * passed in will be uploaded. 
+	 * Creating an instance lists the image files in the directory passed in,
+	 * and each one is uploaded the first time it is used.
 	 * 
 	 * Animations are also parsed through this method. Each animation should have a
 	 * text file containing the number of slides (cells) composed in an image. The name
@@ -149,14 +215,16 @@ public class DesktopImgUpload implements ImgUpload{
 	 *            The directory containing image files. (*.png, *.jpg)
 	 * @return The instance of ImgUpload
 	 */
-	public static DesktopImgUpload getInstance(File f) {
+	public static synchronized DesktopImgUpload getInstance(File f) {
 		Iterator<DesktopImgUpload> Imu = iuList.iterator();
 		if (Imu.hasNext()) {
 			DesktopImgUpload obj;
 
 			do {
 				obj = Imu.next();
-				if (obj.getFile().getAbsolutePath() == f.getAbsolutePath()) {
+				if (obj.pack == null
+						&& obj.getFile().getAbsolutePath()
+								.equals(f.getAbsolutePath())) {
 					return obj;
 				}
 			} while (Imu.hasNext());
@@ -166,24 +234,114 @@ public class DesktopImgUpload implements ImgUpload{
 		return iu;
 	}
 
+	/**
+	 * Creates an instance of ImgUpload for a directory of an asset pack if
+	 * one doesn't exist. Animations are parsed from text files in the pack, in
+	 * the same way as in a directory.
+	 * 
+	 * @param pack
+	 *            The asset pack.
+	 * @param directory
+	 *            The directory within the pack, for example "images", or ""
+	 *            for the top of the pack.
+	 * @return The instance of ImgUpload
+	 */
+	public static synchronized DesktopImgUpload getInstance(AssetPack pack,
+			String directory) {
+		for (DesktopImgUpload obj : iuList) {
+			if (obj.pack == pack && obj.directory.equals(directory)) {
+				return obj;
+			}
+		}
+		DesktopImgUpload iu = new DesktopImgUpload(pack, directory);
+		iuList.add(iu);
+		return iu;
+	}
+
 	
+	/**
+	 * Get an image file, decoding it if this is the first time it has been
+	 * asked for. If the image is being decoded by
+	 * {@link #prefetch(String...)}, wait for it instead.
+	 * 
+	 * @param fileName
+	 *            The file name, not including any directories or the full path.
+	 * @return The image, or NullImg if it doesn't exist or couldn't be read.
+	 */
 	@Override
 	public Img getImg(String fileName) {
 		Img i = img.get(fileName);
 		if (i == null) {
-			return NullImg.getInstance();
+			FutureTask<Img> t = index.get(fileName);
+			if (t == null) {
+				return NullImg.getInstance();
+			}
+			// Runs the task unless another thread already has.
+			t.run();
+			try {
+				i = t.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+			if (i == null) {
+				return NullImg.getInstance();
+			}
+			img.put(fileName, i);
 		}
 		return i;
 	}
 
+	/**
+	 * Decode images on a background thread, so that they are ready before
+	 * they are first drawn, for example while a level is loading. Images that
+	 * are asked for by {@link #getImg(String)} while they are being decoded
+	 * are not decoded twice.
+	 * 
+	 * @param fileNames
+	 *            The images to decode.
+	 * @return A future giving the number of images that were read.
+	 */
+	public Future<Integer> prefetch(final String... fileNames) {
+		FutureTask<Integer> task = new FutureTask<Integer>(
+				new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						int read = 0;
+						for (String name : fileNames) {
+							if (getImg(name) != NullImg.getInstance()) {
+								read++;
+							}
+						}
+						return read;
+					}
+				});
+		Thread t = new Thread(task, "DesktopImgUpload " + f.getName());
+		t.setDaemon(true);
+		t.setPriority(Thread.MIN_PRIORITY);
+		t.start();
+		return task;
+	}
+
+	/**
+	 * Get the names of the images of this instance, whether or not they have
+	 * been decoded.
+	 * 
+	 * @return The file names.
+	 */
+	public String[] getNames() {
+		return index.keySet().toArray(new String[index.size()]);
+	}
+
 
 	@Override
 	public Img getRotatedImg(String fileName, int degree) {
 		degree %= 360;
 		Img i = img.get(fileName + degree);
 		if (i == null) {
-			i = img.get(fileName);
-			if (i == null){
+			i = getImg(fileName);
+			if (i == NullImg.getInstance()){
 				return NullImg.getInstance();
 			} else {
 				Img rotated = i.getRotatedInstance(degree);
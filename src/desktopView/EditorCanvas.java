@@ -12,6 +12,8 @@ import java.io.File;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 
+import sprite.Img;
+import sprite.ImgBuffer;
 import sprite.ImgUpload;
 
 
@@ -30,6 +32,8 @@ public class EditorCanvas extends JFrame implements IDesktopCanvas{
 	BufferedImage bi;
 	Graphics buffer;
 	private Graphics g;
+	// The clip set by setClip, or a negative width for the whole canvas.
+	private int clipX, clipY, clipWidth = -1, clipHeight;
 	
 	public EditorCanvas(int width, int height, int xOffset, int yOffset, String title) {
 		super(title);
@@ -108,4 +112,34 @@ public class EditorCanvas extends JFrame implements IDesktopCanvas{
 		
 	}
 
+	@Override
+	public ImgBuffer createBuffer(int width, int height) {
+		return new BufferCanvas(width, height);
+	}
+
+	@Override
+	public Img createPixelImg(int[] pixels, int width, int height) {
+		return Sprite.wrap(pixels, width, height);
+	}
+
+	@Override
+	public void setClip(int x, int y, int width, int height) {
+		buffer.setClip(x, y, width, height);
+		clipX = x;
+		clipY = y;
+		clipWidth = width;
+		clipHeight = height;
+	}
+
+	@Override
+	public int[] getClip(int[] bounds) {
+		if (clipWidth < 0) {
+			return IDesktopCanvas.super.getClip(bounds);
+		}
+		bounds[0] = clipX;
+		bounds[1] = clipY;
+		bounds[2] = clipWidth;
+		bounds[3] = clipHeight;
+		return bounds;
+	}
 }
@@ -0,0 +1,128 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package desktopView;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import sprite.Img;
+import sprite.ImgBuffer;
+import sprite.ImgUpload;
+
+/**
+ * A canvas that is never shown. Images drawn on it are discarded, which makes
+ * it useful for servers, benchmarks, and replays that run a SimpleWorld
+ * without a screen.
+ * 
+ * @author Brian Nakayama
+ */
+public class HeadlessCanvas implements IDesktopCanvas {
+
+	private final int width, height;
+	// The clip set by setClip, or a negative width for the whole canvas.
+	private int clipX, clipY, clipWidth = -1, clipHeight;
+
+	/**
+	 * Create a headless canvas with the dimensions of the screen it replaces.
+	 * 
+	 * @param width
+	 *            The width (in pixels) of the screen.
+	 * @param height
+	 *            The height (in pixels) of the screen.
+	 */
+	public HeadlessCanvas(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public void paint() {
+	}
+
+	@Override
+	public void fullScreen() {
+	}
+
+	@Override
+	public void windowScreen() {
+	}
+
+	@Override
+	public void setRotation(int degrees) {
+	}
+
+	@Override
+	public void drawImage(BufferedImage bi, int x, int y) {
+	}
+
+	@Override
+	public ImgUpload getImgUpload(String s) {
+		return DesktopImgUpload.getInstance(new File(s));
+	}
+
+	/**
+	 * Nothing is drawn on a headless canvas, so it has no buffers.
+	 */
+	@Override
+	public ImgBuffer createBuffer(int width, int height) {
+		return null;
+	}
+
+	/**
+	 * Nothing is drawn on a headless canvas, so it has no pixel images.
+	 */
+	@Override
+	public Img createPixelImg(int[] pixels, int width, int height) {
+		return null;
+	}
+
+	@Override
+	public void setClip(int x, int y, int width, int height) {
+		clipX = x;
+		clipY = y;
+		clipWidth = width;
+		clipHeight = height;
+	}
+
+	@Override
+	public int[] getClip(int[] bounds) {
+		if (clipWidth < 0) {
+			return IDesktopCanvas.super.getClip(bounds);
+		}
+		bounds[0] = clipX;
+		bounds[1] = clipY;
+		bounds[2] = clipWidth;
+		bounds[3] = clipHeight;
+		return bounds;
+	}
+}
@@ -24,6 +24,10 @@ package desktopView;
 
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import sprite.Img;
 import sprite.ImgCanvas;
 
@@ -45,6 +49,26 @@ public class Sprite extends Img implements Previewable{
 	public Sprite(BufferedImage bI) {
 		this.bI = bI;
 	}
+
+	/**
+	 * Creates a sprite backed by an array of ARGB pixels, so that changes to
+	 * the array show up the next time the sprite is drawn.
+	 * 
+	 * @param pixels
+	 *            The pixels in rows, from the top left corner.
+	 * @param width
+	 *            The width of the sprite.
+	 * @param height
+	 *            The height of the sprite.
+	 * @return The new sprite.
+	 */
+	public static Sprite wrap(int[] pixels, int width, int height) {
+		DataBufferInt db = new DataBufferInt(pixels, width * height);
+		WritableRaster r = Raster.createPackedRaster(db, width, height, width,
+				new int[] { 0xFF0000, 0xFF00, 0xFF, 0xFF000000 }, null);
+		return new Sprite(new BufferedImage(ColorModel.getRGBdefault(), r,
+				false, null));
+	}
 	
 	/**
 	 * Return the internal image stored for desktop applications.
@@ -64,6 +88,16 @@ public class Sprite extends Img implements Previewable{
 		iL.slideEnd();
 	}
 
+	@Override
+	public void drawStill(int x, int y, ImgCanvas i) {
+		((IDesktopCanvas)i).drawImage(bI, x, y);
+	}
+
+	@Override
+	public void skipSlide() {
+		iL.slideEnd();
+	}
+
 	@Override
 	public int getWidth() {
 		return bI.getWidth();
@@ -86,4 +120,26 @@ public class Sprite extends Img implements Previewable{
 		return new Sprite(bNew);
 	}
 
+	@Override
+	public Img getTiledInstance(int width, int height) {
+		return tile(bI, width, height);
+	}
+
+	/*
+	 * Repeat an image across a new sprite of a given size. Shared with
+	 * ColorImg.
+	 */
+	static Sprite tile(BufferedImage bI, int width, int height) {
+		BufferedImage bNew = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = bNew.createGraphics();
+		for (int x = 0; x < width; x += bI.getWidth()) {
+			for (int y = 0; y < height; y += bI.getHeight()) {
+				g.drawImage(bI, x, y, null);
+			}
+		}
+		g.dispose();
+		return new Sprite(bNew);
+	}
+
 }
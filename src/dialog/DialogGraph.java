@@ -40,6 +40,8 @@ import java.util.HashMap;
 
 import javax.swing.JOptionPane;
 
+import clock.RandomSource;
+
 /**
  * This class contains methods for creating, changing, saving,
  * loading, and validating dialog graphs.
@@ -287,7 +289,7 @@ public class DialogGraph {
 		//TODO Each graph needs to have independent strategies.
 		//TODO Changeable strategies.
 		int strategy = 0;
-		double randomDouble = Math.random();
+		double randomDouble = RandomSource.getInstance().nextDouble();
 		double floor = 0;
 		double ceiling = 0;
 		for (int c = 0; c < currentNode.getChildren().length; c++) {
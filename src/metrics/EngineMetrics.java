@@ -0,0 +1,197 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters for the engine's hot paths.
+ * 
+ * The counters are LongAdders, so they can be incremented from any thread
+ * without locking. The world counts objects and collisions in plain fields
+ * during a frame, and adds them here once per frame with
+ * {@link #tick(int, int, long, long, long)}. Call {@link #register()} to
+ * export the counters to a JMX client as "SSEngine:type=EngineMetrics".
+ * 
+ * @author Brian Nakayama
+ * @see EngineMetricsMBean
+ */
+public class EngineMetrics implements EngineMetricsMBean {
+
+	public static final String NAME = "SSEngine:type=EngineMetrics";
+
+	private static final EngineMetrics metrics = new EngineMetrics();
+
+	private final LongAdder ticks = new LongAdder();
+	private final LongAdder updated = new LongAdder();
+	private final LongAdder drawn = new LongAdder();
+	private final LongAdder collisionChecks = new LongAdder();
+	private final LongAdder rejectedMoves = new LongAdder();
+	private final LongAdder collisionCallbacks = new LongAdder();
+	private final LongAdder imagesLoaded = new LongAdder();
+	private final LongAdder soundsPlayed = new LongAdder();
+	private volatile long lastUpdated = 0, lastDrawn = 0;
+
+	/*
+	 * Singleton constructor.
+	 */
+	private EngineMetrics() {
+	}
+
+	/**
+	 * Get the instance holding the counters.
+	 * 
+	 * @return The metrics.
+	 */
+	public static EngineMetrics getInstance() {
+		return metrics;
+	}
+
+	/**
+	 * Export the counters through the platform MBean server. Calling this
+	 * method more than once has no effect.
+	 * 
+	 * @return True iff the counters are registered.
+	 */
+	public static synchronized boolean register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(metrics, name);
+			}
+			return true;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Add the counts for a single frame.
+	 * 
+	 * @param updated
+	 *            The number of objects visited by the update loop.
+	 * @param drawn
+	 *            The number of objects visited by the paint loop.
+	 * @param collisionChecks
+	 *            The number of collision checks.
+	 * @param rejectedMoves
+	 *            The number of rejected moves.
+	 * @param collisionCallbacks
+	 *            The number of collision callbacks.
+	 */
+	public void tick(int updated, int drawn, long collisionChecks,
+			long rejectedMoves, long collisionCallbacks) {
+		ticks.increment();
+		this.updated.add(updated);
+		this.drawn.add(drawn);
+		this.collisionChecks.add(collisionChecks);
+		this.rejectedMoves.add(rejectedMoves);
+		this.collisionCallbacks.add(collisionCallbacks);
+		lastUpdated = updated;
+		lastDrawn = drawn;
+	}
+
+	/**
+	 * Count an image file that was loaded.
+	 */
+	public void imageLoaded() {
+		imagesLoaded.increment();
+	}
+
+	/**
+	 * Count a sound that was played.
+	 */
+	public void soundPlayed() {
+		soundsPlayed.increment();
+	}
+
+	@Override
+	public long getTicks() {
+		return ticks.sum();
+	}
+
+	@Override
+	public long getObjectsUpdated() {
+		return updated.sum();
+	}
+
+	@Override
+	public long getObjectsDrawn() {
+		return drawn.sum();
+	}
+
+	@Override
+	public long getLastTickObjectsUpdated() {
+		return lastUpdated;
+	}
+
+	@Override
+	public long getLastTickObjectsDrawn() {
+		return lastDrawn;
+	}
+
+	@Override
+	public long getCollisionChecks() {
+		return collisionChecks.sum();
+	}
+
+	@Override
+	public long getRejectedMoves() {
+		return rejectedMoves.sum();
+	}
+
+	@Override
+	public long getCollisionCallbacks() {
+		return collisionCallbacks.sum();
+	}
+
+	@Override
+	public long getImagesLoaded() {
+		return imagesLoaded.sum();
+	}
+
+	@Override
+	public long getSoundsPlayed() {
+		return soundsPlayed.sum();
+	}
+
+	@Override
+	public void reset() {
+		ticks.reset();
+		updated.reset();
+		drawn.reset();
+		collisionChecks.reset();
+		rejectedMoves.reset();
+		collisionCallbacks.reset();
+		imagesLoaded.reset();
+		soundsPlayed.reset();
+		lastUpdated = 0;
+		lastDrawn = 0;
+	}
+}
@@ -0,0 +1,89 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package metrics;
+
+/**
+ * The management interface of {@link EngineMetrics}. Each getter is exported
+ * as a read only JMX attribute.
+ * 
+ * @author Brian Nakayama
+ */
+public interface EngineMetricsMBean {
+
+	/**
+	 * @return The number of frames run by every SimpleWorld.
+	 */
+	public long getTicks();
+
+	/**
+	 * @return The total number of objects visited by the update loop.
+	 */
+	public long getObjectsUpdated();
+
+	/**
+	 * @return The total number of objects visited by the paint loop.
+	 */
+	public long getObjectsDrawn();
+
+	/**
+	 * @return The number of objects visited by the update loop in the most
+	 *         recent frame.
+	 */
+	public long getLastTickObjectsUpdated();
+
+	/**
+	 * @return The number of objects visited by the paint loop in the most
+	 *         recent frame.
+	 */
+	public long getLastTickObjectsDrawn();
+
+	/**
+	 * @return The number of calls to SimpleMap.calculateCollisions.
+	 */
+	public long getCollisionChecks();
+
+	/**
+	 * @return The number of SimpleSolid moves rejected by a collision.
+	 */
+	public long getRejectedMoves();
+
+	/**
+	 * @return The number of calls to SimpleObject.collision.
+	 */
+	public long getCollisionCallbacks();
+
+	/**
+	 * @return The number of image files loaded.
+	 */
+	public long getImagesLoaded();
+
+	/**
+	 * @return The number of sounds played.
+	 */
+	public long getSoundsPlayed();
+
+	/**
+	 * Set every counter back to 0.
+	 */
+	public void reset();
+}
@@ -0,0 +1,9 @@
+/**
+ * 
+ */
+/**
+ * Contains counters for the engine's hot paths, exported as platform MBeans.
+ * @author Brian Nakayama
+ *
+ */
+package metrics;
@@ -0,0 +1,292 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package pack;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single file holding the assets of a game, written by
+ * {@link AssetPackWriter}. Opening a pack reads only its table of contents;
+ * the file is mapped into memory, and the bytes of an asset are read by the
+ * operating system the first time they are used.
+ * 
+ * Assets are named by their path within the pack, with "/" between
+ * directories, for example "images/player.png". Sprite sheets keep their
+ * "images/player.png.txt" files beside them, as they would in a directory.
+ * 
+ * <pre>
+ * <code>
+ * AssetPack pack = AssetPack.open(new File("level1.pack"));
+ * ImgUpload images = DesktopImgUpload.getInstance(pack, "images");
+ * SoundUpload sounds = SoundUpload.getInstance(pack, "sounds");
+ * SimpleWorldFactory swf = SimpleFactoryIO.loadFactory(pack.open("level1.factory"));
+ * SimpleMap m = SimpleMapIO.loadSimpleMap(pack.open("level1.map"), swf);
+ * </code>
+ * </pre>
+ * 
+ * A pack can be read from several threads at once.
+ * 
+ * @author Brian Nakayama
+ * @see AssetPackWriter
+ */
+public class AssetPack {
+
+	static final int MAGIC = 0xF055AA50;
+	/**
+	 * The version of the format written by {@link AssetPackWriter}.
+	 */
+	public static final int VERSION = 1;
+	// The magic number, version and offset of the table of contents.
+	static final int HEADER = 16;
+
+	private final File f;
+	private final MappedByteBuffer data;
+	// The offset and length of each asset.
+	private final Map<String, long[]> entries;
+	private final List<String> names;
+
+	private AssetPack(File f, MappedByteBuffer data,
+			Map<String, long[]> entries, List<String> names) {
+		this.f = f;
+		this.data = data;
+		this.entries = entries;
+		this.names = names;
+	}
+
+	/**
+	 * Open a pack and read its table of contents.
+	 * 
+	 * @param f
+	 *            The pack file.
+	 * @return The pack, or null if it couldn't be read.
+	 */
+	public static AssetPack open(File f) {
+		try {
+			FileChannel c = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+			MappedByteBuffer data;
+			try {
+				if (c.size() > Integer.MAX_VALUE) {
+					System.out.println("Error: " + f.getName()
+							+ " is larger than 2GB.");
+					return null;
+				}
+				// The mapping stays valid once the channel is closed.
+				data = c.map(FileChannel.MapMode.READ_ONLY, 0, c.size());
+			} finally {
+				c.close();
+			}
+
+			if (data.capacity() < HEADER || data.getInt(0) != MAGIC) {
+				System.out.println("Error: " + f.getName()
+						+ " is not an asset pack.");
+				return null;
+			}
+			int version = data.getInt(4);
+			if (version != VERSION) {
+				System.out.println("Error: Unknown asset pack version "
+						+ version + ".");
+				return null;
+			}
+			long toc = data.getLong(8);
+			if (toc < HEADER || toc > data.capacity()) {
+				System.out.println("Error: " + f.getName()
+						+ " is incomplete.");
+				return null;
+			}
+
+			DataInputStream dI = new DataInputStream(stream(data, (int) toc,
+					data.capacity() - (int) toc));
+			int count = dI.readInt();
+			Map<String, long[]> entries = new HashMap<String, long[]>(
+					count * 2);
+			List<String> names = new ArrayList<String>(count);
+			for (int n = 0; n < count; n++) {
+				String name = dI.readUTF();
+				long offset = dI.readLong();
+				int length = dI.readInt();
+				if (offset < HEADER || offset + length > toc) {
+					throw new IOException("Asset " + name
+							+ " is outside of the pack.");
+				}
+				entries.put(name, new long[] { offset, length });
+				names.add(name);
+			}
+			return new AssetPack(f, data, entries,
+					Collections.unmodifiableList(names));
+		} catch (IOException e) {
+			System.out.println("Error: Couldn't read " + f.getName() + ".");
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Check whether the pack holds an asset.
+	 * 
+	 * @param name
+	 *            The path of the asset within the pack.
+	 * @return True if the asset exists.
+	 */
+	public boolean contains(String name) {
+		return entries.containsKey(name);
+	}
+
+	/**
+	 * Get the bytes of an asset without copying them.
+	 * 
+	 * @param name
+	 *            The path of the asset within the pack.
+	 * @return A read only buffer of the asset, or null if it doesn't exist.
+	 */
+	public ByteBuffer get(String name) {
+		long[] e = entries.get(name);
+		if (e == null) {
+			return null;
+		}
+		ByteBuffer b = data.duplicate();
+		b.position((int) e[0]);
+		b.limit((int) (e[0] + e[1]));
+		return b.slice();
+	}
+
+	/**
+	 * Get a stream of the bytes of an asset. The stream supports mark and
+	 * reset, and needs no closing.
+	 * 
+	 * @param name
+	 *            The path of the asset within the pack.
+	 * @return The stream, or null if the asset doesn't exist.
+	 */
+	public InputStream open(String name) {
+		long[] e = entries.get(name);
+		if (e == null) {
+			return null;
+		}
+		return stream(data, (int) e[0], (int) e[1]);
+	}
+
+	/**
+	 * Get the names of the assets in a directory of the pack, not including
+	 * those of its subdirectories.
+	 * 
+	 * @param directory
+	 *            The directory, for example "images", or "" for the top of
+	 *            the pack.
+	 * @return The names of the assets without the directory, in the order they
+	 *         were written.
+	 */
+	public List<String> list(String directory) {
+		String prefix = directory.length() == 0 ? "" : directory + "/";
+		List<String> l = new ArrayList<String>();
+		for (String name : names) {
+			if (name.startsWith(prefix)
+					&& name.indexOf('/', prefix.length()) < 0) {
+				l.add(name.substring(prefix.length()));
+			}
+		}
+		return l;
+	}
+
+	/**
+	 * Get the names of every asset in the pack.
+	 * 
+	 * @return The names, in the order they were written.
+	 */
+	public List<String> getNames() {
+		return names;
+	}
+
+	/**
+	 * Get the pack file.
+	 * 
+	 * @return The file.
+	 */
+	public File getFile() {
+		return f;
+	}
+
+	private static InputStream stream(ByteBuffer data, int offset, int length) {
+		final ByteBuffer b = data.duplicate();
+		b.position(offset);
+		b.limit(offset + length);
+		return new InputStream() {
+			private int mark = b.position();
+
+			@Override
+			public int read() {
+				return b.hasRemaining() ? b.get() & 0xFF : -1;
+			}
+
+			@Override
+			public int read(byte[] dst, int off, int len) {
+				if (len == 0) {
+					return 0;
+				} else if (!b.hasRemaining()) {
+					return -1;
+				}
+				len = Math.min(len, b.remaining());
+				b.get(dst, off, len);
+				return len;
+			}
+
+			@Override
+			public long skip(long n) {
+				int k = (int) Math.max(0, Math.min(n, b.remaining()));
+				b.position(b.position() + k);
+				return k;
+			}
+
+			@Override
+			public int available() {
+				return b.remaining();
+			}
+
+			@Override
+			public boolean markSupported() {
+				return true;
+			}
+
+			@Override
+			public void mark(int limit) {
+				mark = b.position();
+			}
+
+			@Override
+			public void reset() {
+				b.position(mark);
+			}
+		};
+	}
+}
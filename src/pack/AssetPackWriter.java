@@ -0,0 +1,251 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package pack;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes an {@link AssetPack}. Assets are stored as they are, since images,
+ * MIDI files and maps are already compressed, so that they can be read
+ * straight from the mapped file.
+ * 
+ * The format of a pack is:
+ * 
+ * &lt; int: MAGIC &gt;<br>
+ * &lt; int: version &gt;<br>
+ * &lt; long: offset of the table of contents &gt;<br>
+ * for (a in assets) do <br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; bytes: a &gt;<br>
+ * done.<br>
+ * &lt; int: number of assets &gt;<br>
+ * for (a in assets) do <br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; utf_string: the name of a &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; long: offset of a &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: length of a &gt;<br>
+ * done.
+ * 
+ * The offset of the table of contents is written last, so a pack that wasn't
+ * closed can't be opened.
+ * 
+ * A pack can be built from the command line, with each directory added under
+ * its own name:
+ * 
+ * <pre>
+ * java pack.AssetPackWriter level1.pack images sounds maps
+ * </pre>
+ * 
+ * @author Brian Nakayama
+ * @see AssetPack
+ */
+public class AssetPackWriter {
+
+	private final File f;
+	private DataOutputStream dO;
+	private long position;
+	private final List<String> names = new ArrayList<String>();
+	private final List<long[]> entries = new ArrayList<long[]>();
+	private final Set<String> used = new HashSet<String>();
+
+	/**
+	 * Create a writer for a pack file.
+	 * 
+	 * @param f
+	 *            The file, which is replaced when the writer is opened.
+	 */
+	public AssetPackWriter(File f) {
+		this.f = f;
+	}
+
+	/**
+	 * Open the file and write the header.
+	 * 
+	 * @return True iff the file was opened successfully.
+	 */
+	public boolean open() {
+		try {
+			dO = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(f, false), 1 << 16));
+			dO.writeInt(AssetPack.MAGIC);
+			dO.writeInt(AssetPack.VERSION);
+			dO.writeLong(0);
+			position = AssetPack.HEADER;
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	/**
+	 * Add an asset.
+	 * 
+	 * @param name
+	 *            The path of the asset within the pack, with "/" between
+	 *            directories.
+	 * @param b
+	 *            The bytes of the asset.
+	 * @return True if the asset was added.
+	 */
+	public boolean add(String name, byte[] b) {
+		if (dO == null) {
+			return false;
+		} else if (!used.add(name)) {
+			System.out.println("Error: The pack already holds " + name + ".");
+			return false;
+		} else if (position + b.length > Integer.MAX_VALUE) {
+			System.out.println("Error: The pack can't be larger than 2GB.");
+			return false;
+		}
+		try {
+			dO.write(b);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		names.add(name);
+		entries.add(new long[] { position, b.length });
+		position += b.length;
+		return true;
+	}
+
+	/**
+	 * Add a file as an asset.
+	 * 
+	 * @param name
+	 *            The path of the asset within the pack.
+	 * @param file
+	 *            The file to copy.
+	 * @return True if the asset was added.
+	 */
+	public boolean add(String name, File file) {
+		try {
+			return add(name, Files.readAllBytes(file.toPath()));
+		} catch (IOException e) {
+			System.out.println("Error: Couldn't read " + file.getPath() + ".");
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	/**
+	 * Add every file in a directory and its subdirectories, sorted by name.
+	 * 
+	 * @param directory
+	 *            The directory within the pack, for example "images", or ""
+	 *            for the top of the pack.
+	 * @param dir
+	 *            The directory to copy.
+	 * @return The number of files added.
+	 */
+	public int addDirectory(String directory, File dir) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			System.out.println("Error: " + dir.getPath()
+					+ " is not a directory.");
+			return 0;
+		}
+		Arrays.sort(files);
+		String prefix = directory.length() == 0 ? "" : directory + "/";
+		int added = 0;
+		for (File file : files) {
+			if (file.isDirectory()) {
+				added += addDirectory(prefix + file.getName(), file);
+			} else if (add(prefix + file.getName(), file)) {
+				added++;
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Write the table of contents and close the file.
+	 * 
+	 * @return True if the pack was written successfully.
+	 */
+	public boolean close() {
+		if (dO == null) {
+			return false;
+		}
+		try {
+			dO.writeInt(names.size());
+			for (int n = 0; n < names.size(); n++) {
+				long[] e = entries.get(n);
+				dO.writeUTF(names.get(n));
+				dO.writeLong(e[0]);
+				dO.writeInt((int) e[1]);
+			}
+			dO.close();
+			dO = null;
+
+			RandomAccessFile raf = new RandomAccessFile(f, "rw");
+			try {
+				raf.seek(8);
+				raf.writeLong(position);
+				raf.getFD().sync();
+			} finally {
+				raf.close();
+			}
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	/**
+	 * Build a pack from directories.
+	 * 
+	 * @param args
+	 *            The pack file, followed by the directories to add.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("Usage: java pack.AssetPackWriter "
+					+ "<pack> <directory>...");
+			return;
+		}
+		AssetPackWriter w = new AssetPackWriter(new File(args[0]));
+		if (!w.open()) {
+			return;
+		}
+		int added = 0;
+		for (int n = 1; n < args.length; n++) {
+			File dir = new File(args[n]);
+			added += w.addDirectory(dir.getName(), dir);
+		}
+		if (w.close()) {
+			System.out.println("Wrote " + added + " assets to " + args[0]);
+		}
+	}
+}
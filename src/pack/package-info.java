@@ -0,0 +1,10 @@
+/**
+ * 
+ */
+/**
+ * Reads and writes asset packs, single files holding the images, sounds and
+ * maps of a game with a table of contents.
+ * @author Brian Nakayama
+ *
+ */
+package pack;
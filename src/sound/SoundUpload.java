@@ -23,15 +23,18 @@ THE SOFTWARE.
 
 package sound;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.FileSystemNotFoundException;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.sound.midi.MidiSystem;
 import javax.sound.midi.Sequence;
 import javax.sound.sampled.AudioInputStream;
@@ -39,8 +42,11 @@ import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
 import javax.sound.sampled.DataLine;
 
+import pack.AssetPack;
+
 /**
- * Loads all sound files for a directory.
+ * Loads all sound files for a directory, or for a directory of an
+ * {@link AssetPack}.
  * 
  * For each directory there exists only one instance of SoundUpload as
  * determined by the getInstance method. For an example of how to use
@@ -53,9 +59,13 @@ import javax.sound.sampled.DataLine;
 public class SoundUpload {
 
 	private File f;
+	private AssetPack pack;
+	private String directory;
 	private static List<SoundUpload> suList = new LinkedList<SoundUpload>();
 
-	private Map<String, Sound> sound = new HashMap<String, Sound>();
+	private Map<String, Sound> sound = new ConcurrentHashMap<String, Sound>();
+	// Locks that keep two threads from loading the same sound of a pack.
+	private ConcurrentHashMap<String, Object> loading = new ConcurrentHashMap<String, Object>();
 	private FileFilter fs = new FileFilter() {
 		@Override
 		public boolean accept(File f) {
@@ -82,7 +92,7 @@ public class SoundUpload {
 	 *            The directory containing sound files. (*.wav, *.midi)
 	 * @return An instance of SoundUpload
 	 */
-	public static SoundUpload getInstance(File f) {
+	public static synchronized SoundUpload getInstance(File f) {
 		Iterator<SoundUpload> Isu = suList.iterator();
 		if (Isu.hasNext()) {
 			SoundUpload obj;
@@ -99,6 +109,30 @@ public class SoundUpload {
 		return su;
 	}
 
+	/**
+	 * Creates an instance of SoundUpload for a directory of an asset pack if
+	 * one doesn't exist. Unlike {@link #getInstance(File)}, no sound is read
+	 * until it is first asked for by {@link #getSound(String)}.
+	 * 
+	 * @param pack
+	 *            The asset pack.
+	 * @param directory
+	 *            The directory within the pack, for example "sounds", or ""
+	 *            for the top of the pack.
+	 * @return An instance of SoundUpload
+	 */
+	public static synchronized SoundUpload getInstance(AssetPack pack,
+			String directory) {
+		for (SoundUpload obj : suList) {
+			if (obj.pack == pack && obj.directory.equals(directory)) {
+				return obj;
+			}
+		}
+		SoundUpload su = new SoundUpload(pack, directory);
+		suList.add(su);
+		return su;
+	}
+
 	/*
 	 * Private constructor. This is a slight modification on the Singleton
 	 * pattern.
@@ -110,32 +144,12 @@ public class SoundUpload {
 
 			for (int i = 0; i < sounds.length; i++) {
 				Sound bS = null;
-
-				if (sounds[i].getName().endsWith(".mid")) {
-					try {
-						FileInputStream is = new FileInputStream(sounds[i]);
-						Sequence Seq = MidiSystem.getSequence(is);
-						bS = new MIDI(Seq);
-						is.close();
-					} catch (Exception e) {
-						System.out.println("Error loading midi: "
-								+ sounds[i].getName());
-					}
-				} else if (sounds[i].getName().endsWith(".wav")) {
-					try {
-						AudioInputStream as = AudioSystem
-								.getAudioInputStream(sounds[i]);
-						DataLine.Info info = new DataLine.Info(Clip.class, as.getFormat());
-						Clip c = (Clip) AudioSystem.getLine(info);
-						c.open(as);
-						bS = new WAV(c);
-						as.close();
-					} catch (Exception e) {
-						System.out.println("Error loading wav:"
-								+ sounds[i].getName());
-						e.printStackTrace();
-
-					}
+				try {
+					bS = load(sounds[i].getName(), new BufferedInputStream(
+							new FileInputStream(sounds[i])));
+				} catch (Exception e) {
+					System.out.println("Error loading sound: "
+							+ sounds[i].getName());
 				}
 
 				if (bS != null) {
@@ -148,6 +162,49 @@ public class SoundUpload {
 		}
 	}
 
+	private SoundUpload(AssetPack pack, String directory) {
+		this.f = pack.getFile();
+		this.pack = pack;
+		this.directory = directory;
+	}
+
+	/*
+	 * Read a MIDI or WAV file from a stream that supports mark, and close the
+	 * stream.
+	 */
+	private static Sound load(String name, InputStream is) {
+		Sound bS = null;
+		try {
+			if (name.endsWith(".mid")) {
+				try {
+					Sequence Seq = MidiSystem.getSequence(is);
+					bS = new MIDI(Seq);
+				} catch (Exception e) {
+					System.out.println("Error loading midi: " + name);
+				}
+			} else if (name.endsWith(".wav")) {
+				try {
+					AudioInputStream as = AudioSystem.getAudioInputStream(is);
+					DataLine.Info info = new DataLine.Info(Clip.class,
+							as.getFormat());
+					Clip c = (Clip) AudioSystem.getLine(info);
+					c.open(as);
+					bS = new WAV(c);
+				} catch (Exception e) {
+					System.out.println("Error loading wav:" + name);
+					e.printStackTrace();
+				}
+			}
+		} finally {
+			try {
+				is.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return bS;
+	}
+
 	/**
 	 * Get a sound file
 	 * 
@@ -155,7 +212,25 @@ public class SoundUpload {
 	 * @return The sound if it exists.
 	 */
 	public Sound getSound(String fileName) {
-		return sound.get(fileName);
+		Sound s = sound.get(fileName);
+		if (s == null && pack != null) {
+			Object lock = new Object();
+			Object held = loading.putIfAbsent(fileName, lock);
+			if (held != null) {
+				lock = held;
+			}
+			synchronized (lock) {
+				s = sound.get(fileName);
+				if (s == null) {
+					InputStream is = pack.open(directory.length() == 0 ? fileName
+							: directory + "/" + fileName);
+					if (is != null && (s = load(fileName, is)) != null) {
+						sound.put(fileName, s);
+					}
+				}
+			}
+		}
+		return s;
 	}
 
 	/**
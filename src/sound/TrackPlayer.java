@@ -28,6 +28,8 @@ import javax.sound.midi.MidiSystem;
 import javax.sound.midi.Sequencer;
 import javax.sound.sampled.Clip;
 
+import metrics.EngineMetrics;
+
 /**
  * Plays the sound files created by SoundUpload.
  * 
@@ -119,6 +121,7 @@ public class TrackPlayer {
 			sequencer.setLoopCount(count);
 			sequencer.setLoopStartPoint(0);
 			sequencer.start();
+			EngineMetrics.getInstance().soundPlayed();
 		} catch (InvalidMidiDataException ex) {
 			System.out.println("Error starting sequence =P.");
 		}
@@ -148,6 +151,7 @@ public class TrackPlayer {
 		c.loop(count);
 		c.setFramePosition(0);
 		c.start();
+		EngineMetrics.getInstance().soundPlayed();
 
 	}
 
@@ -86,4 +86,36 @@ public abstract class Img
      */
     public abstract Img getRotatedInstance(int degree);
     
+    /**
+     * Creates an image of the given size with this image tiled across it,
+     * starting from the top left corner. This can be used to draw a large
+     * tiled area with a single call instead of drawing every tile.
+     * @param width The width of the new image.
+     * @param height The height of the new image.
+     * @return A tiled copy, or null if this image can't be tiled.
+     */
+    public Img getTiledInstance(int width, int height){
+    	return null;
+    }
+    
+    /**
+     * Draws the current slide without advancing the image. This is used to
+     * draw the same image more than once in a frame, for example in several
+     * viewports.
+     * @param x The x position of the upper left corner.
+     * @param y The y position of the upper left corner.
+     * @param i The canvas to be drawn on.
+     * @see #skipSlide()
+     */
+    public void drawStill(int x, int y, ImgCanvas i){
+    	drawSlide(x, y, i);
+    }
+    
+    /**
+     * Advances the image as {@link #drawSlide(int, int, ImgCanvas)} would,
+     * without drawing it.
+     */
+    public void skipSlide(){
+    }
+    
 }
@@ -0,0 +1,47 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package sprite;
+
+/**
+ * An off screen canvas. Images drawn on it are kept, and the result can be
+ * used as an image itself. This is used to draw many images once and then
+ * draw the result every frame.
+ * 
+ * @author Brian Nakayama
+ * @see ImgCanvas#createBuffer(int, int)
+ */
+public interface ImgBuffer extends ImgCanvas {
+
+	/**
+	 * Get an image holding everything drawn on this buffer.
+	 * 
+	 * @return The image.
+	 */
+	public Img getImg();
+
+	/**
+	 * Release the resources used for drawing. The image returned by
+	 * {@link #getImg()} is still valid afterwards.
+	 */
+	public void dispose();
+}
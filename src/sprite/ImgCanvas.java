@@ -72,4 +72,52 @@ public interface ImgCanvas {
 	 * @return An ImgUploader for that directory.
 	 */
 	public ImgUpload getImgUpload(String s);
+
+	/**
+	 * Create an off screen canvas compatible with this one.
+	 * @param width The width of the buffer.
+	 * @param height The height of the buffer.
+	 * @return The buffer, or null if this canvas doesn't support buffers.
+	 */
+	public default ImgBuffer createBuffer(int width, int height) {
+		return null;
+	}
+
+	/**
+	 * Create an image that draws an array of ARGB pixels. The image shares the
+	 * array, so changes to the array are drawn without creating a new image.
+	 * @param pixels The pixels in rows, from the top left corner.
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 * @return The image, or null if this canvas doesn't support pixel images.
+	 */
+	public default Img createPixelImg(int[] pixels, int width, int height) {
+		return null;
+	}
+
+	/**
+	 * Restrict drawing to a rectangle of the canvas. Set the clip to the whole
+	 * canvas to draw everywhere again. Canvases that can't clip ignore this.
+	 * @param x The x position of the upper left corner.
+	 * @param y The y position of the upper left corner.
+	 * @param width The width of the rectangle.
+	 * @param height The height of the rectangle.
+	 */
+	public default void setClip(int x, int y, int width, int height) {
+	}
+
+	/**
+	 * Get the rectangle set by {@link #setClip(int, int, int, int)}, or the
+	 * whole canvas if no clip has been set or the canvas can't clip.
+	 * @param bounds An array of at least four ints to hold the x position,
+	 * y position, width and height of the rectangle.
+	 * @return The array passed in.
+	 */
+	public default int[] getClip(int[] bounds) {
+		bounds[0] = 0;
+		bounds[1] = 0;
+		bounds[2] = getWidth();
+		bounds[3] = getHeight();
+		return bounds;
+	}
 }
@@ -1,5 +1,6 @@
 package test;
 
+import clock.RandomSource;
 import desktopView.ColorImg;
 
 import sprite.Img;
@@ -9,14 +10,15 @@ public class testColor extends SimpleObject {
 
 
 	// Move in 1 of 4 random directions initially
-	private int move = (int) (Math.random() * 4);
+	private int move = RandomSource.getInstance().nextInt(4);
 	// 2D vectors, one for each possible initial direction.
 	private static final int[][] direction = { { 0, 6 }, { 6, 0 }, { 0, -6 },
 			{ -6, 0 } };
 
 	// Generate a randomly colored semi-translucent image.
 	private final Img random = new ColorImg(
-			0x99000000 | (int) (Math.random() * 0xFFFFFF), 20, 30);
+			0x99000000 | RandomSource.getInstance().nextInt(0xFFFFFF), 20,
+			30);
 
 	/**
 	 * The test color object creates a random color that moves at a speed of 6
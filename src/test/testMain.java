@@ -4,6 +4,8 @@ import java.io.File;
 
 import sprite.ImgUpload;
 
+import clock.RandomSource;
+
 import desktopView.DesktopCanvas;
 import desktopView.DesktopImgUpload;
 import world.SimpleMap;
@@ -28,14 +30,14 @@ public class testMain {
 		for (int x = 0; x < 160; x++) {
 			for (int y = 0; y < 120; y++) {
 				// For each cell get a random number.
-				double d = Math.random();
+				double d = RandomSource.getInstance().nextDouble();
 				// With 40% probability add a solid textObject at the cells
 				// coordinates.
 				if (d < 0.4) {
 					m.addSimpleObject(new testObject(), x * 20, y * 20);
 				} else if (d < 0.6) {
 					//With 20% probability add a non-solid test Color.
-					int z = (int) (Math.random() * 16);
+					int z = RandomSource.getInstance().nextInt(16);
 					m.addSimpleObject(new testColor(), x * 20, y * 20, z);
 				}
 			}
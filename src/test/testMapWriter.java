@@ -0,0 +1,126 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import world.SimpleMap;
+import world.SimpleMapIO;
+import world.SimpleObject;
+import world.SimpleWorldFactory;
+
+/**
+ * Round trips maps through {@link world.SimpleMapWriter}, including a first
+ * object whose description is larger than a frame buffer. Exits with 1 if a
+ * map doesn't read back with all of its objects.
+ * 
+ * @author Brian Nakayama
+ */
+public class testMapWriter {
+
+	// The objects created by the factory while a map is read.
+	static final List<Named> created = new ArrayList<Named>();
+
+	/**
+	 * An object that keeps its description.
+	 */
+	public static class Named extends SimpleObject {
+		private String d = "";
+
+		@Override
+		public SimpleObject getClone(String s) {
+			Named n = new Named();
+			n.d = s;
+			created.add(n);
+			return n;
+		}
+
+		@Override
+		public String getDescription() {
+			return d;
+		}
+
+		@Override
+		public void collision(SimpleObject s) {
+		}
+
+		@Override
+		public void update() {
+		}
+
+		@Override
+		public int id() {
+			return 0;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		StringBuilder large = new StringBuilder();
+		for (int n = 0; n < 70000; n++) {
+			large.append('x');
+		}
+		boolean passed = check("large first", large.toString(), "small")
+				& check("large last", "small", large.toString())
+				& check("small", "a", "b");
+		System.exit(passed ? 0 : 1);
+	}
+
+	private static boolean check(String name, String first, String second)
+			throws IOException {
+		SimpleWorldFactory swf = new SimpleWorldFactory();
+		swf.register(new Named());
+		SimpleMap m = new SimpleMap(4, 4, 16, 16);
+		swf.addSimpleObject(0, 0, 0, first, m);
+		swf.addSimpleObject(0, 16, 16, second, m);
+
+		File f = File.createTempFile("testMapWriter", ".map");
+		f.deleteOnExit();
+		boolean passed = true;
+		int[] versions = { SimpleMapIO.VERSION_3, SimpleMapIO.VERSION_4 };
+		for (int version : versions) {
+			SimpleMapIO io = new SimpleMapIO(f, swf);
+			io.openMap(false);
+			boolean written = io.writeMap(m, version);
+			io.closeMap();
+			created.clear();
+			SimpleMap read = SimpleMapIO.loadSimpleMap(f, swf);
+			int objects = 0;
+			int length = 0;
+			if (read != null) {
+				for (Named n : created) {
+					objects++;
+					length += n.getDescription().length();
+				}
+			}
+			boolean ok = written && objects == 2
+					&& length == first.length() + second.length();
+			System.out.println((ok ? "PASS " : "FAIL ") + name + " v"
+					+ version + ": " + objects + " of 2 objects");
+			passed &= ok;
+		}
+		return passed;
+	}
+}
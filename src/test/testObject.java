@@ -1,5 +1,6 @@
 package test;
 
+import clock.RandomSource;
 import desktopView.ColorImg;
 import sprite.Img;
 import world.SimpleObject;
@@ -8,7 +9,7 @@ import world.SimpleSolid;
 public class testObject extends SimpleSolid {
 
 	// Move in 1 of 4 random directions initially
-	private int move = (int) (Math.random() * 4);
+	private int move = RandomSource.getInstance().nextInt(4);
 	// 2D vectors, one for each possible initial direction.
 	private static final int[][] direction = { { 0, 2 }, { 2, 0 }, { 0, -2 },
 			{ -2, 0 } };
@@ -36,7 +37,7 @@ public class testObject extends SimpleSolid {
 		case 0:
 			// If we have collided with ourselves, then pick a new direction to
 			// move in.
-			move = (int) (Math.random() * 4);
+			move = RandomSource.getInstance().nextInt(4);
 		}
 
 	}
@@ -0,0 +1,46 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+/**
+ * Receives the input posted to a SimpleWorld. Input is posted from any thread
+ * with {@link SimpleWorld#postInput(int, int, int)} and delivered on the
+ * clock's thread at the beginning of the next frame, so that a recording of
+ * the input can be replayed frame by frame.
+ * 
+ * @author Brian Nakayama
+ * @see SimpleReplay
+ */
+public interface InputListener {
+	/**
+	 * Handle a single input.
+	 * 
+	 * @param type
+	 *            A game specific type, for example a key code.
+	 * @param x
+	 *            The first value of the input, for example an x coordinate.
+	 * @param y
+	 *            The second value of the input, for example a y coordinate.
+	 */
+	public void input(int type, int x, int y);
+}
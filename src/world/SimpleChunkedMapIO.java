@@ -0,0 +1,634 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes maps in a format divided into square chunks of cells, with
+ * an index of where each chunk begins. Each chunk is stored on its own, either
+ * uncompressed or deflated. The file is memory mapped when opened, so opening
+ * only reads the header, and loading a region of the map only decodes the
+ * chunks that overlap it. This makes it possible to load a level quickly, or
+ * to stream the regions of a large world as they are needed.
+ * 
+ * Since chunks are independent, they can also be inflated and decoded in
+ * parallel on a ForkJoinPool. Only adding the decoded objects to the map is
+ * done on the calling thread.
+ * 
+ * The format of the file is:
+ * 
+ * &lt; int: MAGIC &gt;<br>
+ * &lt; int: version &gt;<br>
+ * &lt; int: map width &gt;<br>
+ * &lt; int: map height &gt; <br>
+ * &lt; int: map cellWidth &gt; <br>
+ * &lt; int: map cellHeight &gt; <br>
+ * &lt; int: chunk size (in cells) &gt; <br>
+ * &lt; int: number of descriptions &gt;<br>
+ * &lt; int: compression, NONE or DEFLATE (since version 2) &gt;<br>
+ * &lt; int: offset of each description &gt;...<br>
+ * for (c in chunks by row) do <br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: offset of c &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: number of objects in c &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: stored length of c (since version 2)
+ * &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: uncompressed length of c (since version
+ * 2) &gt;<br>
+ * done.<br>
+ * for (d in descriptions) do <br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: length &gt; &lt; bytes: d in UTF-8 &gt;
+ * <br>
+ * done.<br>
+ * for (c in chunks by row) do <br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;for (s in c sorted by (y, x)) do <br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: key &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: index of
+ * s.description &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: s.coor_x &gt;
+ * <br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: s.coor_y &gt;
+ * <br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;done.<br>
+ * done.
+ * 
+ * An object belongs to the chunk holding the cell of its coordinates. Like
+ * {@link SimpleMapIO}, objects with a key of -1 are not saved.
+ * 
+ * @author Brian Nakayama
+ * @see SimpleMapIO
+ */
+public class SimpleChunkedMapIO {
+
+	static final int MAGIC = 0xF055AA43;
+	/**
+	 * The version of the format written by this class. Version 1 files, which
+	 * are never compressed, can still be read.
+	 */
+	public static final int VERSION = 2;
+	/**
+	 * The default width and height of a chunk in cells.
+	 */
+	public static final int CHUNK_SIZE = 32;
+	/**
+	 * Chunks stored as they are.
+	 */
+	public static final int NONE = 0;
+	/**
+	 * Chunks compressed with deflate.
+	 */
+	public static final int DEFLATE = 1;
+
+	private final SimpleWorldFactory swf;
+	private RandomAccessFile raf = null;
+	private MappedByteBuffer b = null;
+	private int version, width, height, cellWidth, cellHeight, chunkSize;
+	private int compression, chunksX, chunksY, strings, index, entry;
+	private String[] table;
+
+	/*
+	 * The objects of a chunk, created but not yet added to a map.
+	 */
+	private static class Decoded {
+		final SimpleObject[] objects;
+		final int[] xs, ys;
+
+		Decoded(int count) {
+			objects = new SimpleObject[count];
+			xs = new int[count];
+			ys = new int[count];
+		}
+	}
+
+	/**
+	 * Open a chunked map file. Only the header is read.
+	 * 
+	 * @param f
+	 *            The file.
+	 * @param swf
+	 *            The factory that creates the objects of the map.
+	 */
+	public SimpleChunkedMapIO(File f, SimpleWorldFactory swf) {
+		this.swf = swf;
+		try {
+			raf = new RandomAccessFile(f, "r");
+			FileChannel fc = raf.getChannel();
+			b = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+			version = b.getInt(4);
+			if (b.getInt(0) != MAGIC || version < 1 || version > VERSION) {
+				System.out.println("Error: " + f + " is not a chunked map.");
+				close();
+				return;
+			}
+			width = b.getInt(8);
+			height = b.getInt(12);
+			cellWidth = b.getInt(16);
+			cellHeight = b.getInt(20);
+			chunkSize = b.getInt(24);
+			chunksX = (width + chunkSize - 1) / chunkSize;
+			chunksY = (height + chunkSize - 1) / chunkSize;
+			table = new String[b.getInt(28)];
+			if (version == 1) {
+				compression = NONE;
+				strings = 32;
+				entry = 8;
+			} else {
+				compression = b.getInt(32);
+				strings = 36;
+				entry = 16;
+			}
+			index = strings + table.length * 4;
+		} catch (IOException e) {
+			e.printStackTrace();
+			close();
+		}
+	}
+
+	/**
+	 * @return True iff the file was opened and is a chunked map.
+	 */
+	public boolean isOpen() {
+		return b != null;
+	}
+
+	/**
+	 * Create an empty map with the dimensions stored in the file.
+	 * 
+	 * @return The new map, or null if the file isn't open.
+	 */
+	public SimpleMap createMap() {
+		if (b == null) {
+			return null;
+		}
+		return new SimpleMap(width, height, cellWidth, cellHeight);
+	}
+
+	/**
+	 * Read the whole map on the calling thread.
+	 * 
+	 * @return The map, or null if the file isn't open.
+	 */
+	public SimpleMap readMap() {
+		SimpleMap m = createMap();
+		if (m != null) {
+			loadRegion(m, 0, 0, width, height);
+		}
+		return m;
+	}
+
+	/**
+	 * Read the whole map, decoding the chunks in parallel.
+	 * 
+	 * @param pool
+	 *            The pool that decodes the chunks, for example
+	 *            ForkJoinPool.commonPool().
+	 * @return The map, or null if the file isn't open.
+	 */
+	public SimpleMap readMap(ForkJoinPool pool) {
+		SimpleMap m = createMap();
+		if (m != null) {
+			loadRegion(m, 0, 0, width, height, pool);
+		}
+		return m;
+	}
+
+	/**
+	 * Add the objects of every chunk overlapping a rectangle of cells to a
+	 * map. Whole chunks are loaded, so the objects added may lie outside of
+	 * the rectangle. Loading a chunk twice adds its objects twice.
+	 * 
+	 * @param m
+	 *            The map to add the objects to.
+	 * @param x
+	 *            The left cell of the region.
+	 * @param y
+	 *            The top cell of the region.
+	 * @param w
+	 *            The width of the region in cells.
+	 * @param h
+	 *            The height of the region in cells.
+	 * @return The number of objects read.
+	 */
+	public int loadRegion(SimpleMap m, int x, int y, int w, int h) {
+		return loadRegion(m, x, y, w, h, null);
+	}
+
+	/**
+	 * Add the objects of every chunk overlapping a rectangle of cells to a
+	 * map, decoding the chunks in parallel. The chunks are inflated and their
+	 * objects created on the pool, and then the objects are added to the map
+	 * on the calling thread in the same order as
+	 * {@link #loadRegion(SimpleMap, int, int, int, int)}.
+	 * 
+	 * @param m
+	 *            The map to add the objects to.
+	 * @param x
+	 *            The left cell of the region.
+	 * @param y
+	 *            The top cell of the region.
+	 * @param w
+	 *            The width of the region in cells.
+	 * @param h
+	 *            The height of the region in cells.
+	 * @param pool
+	 *            The pool that decodes the chunks, or null to decode them on
+	 *            the calling thread.
+	 * @return The number of objects read.
+	 */
+	public int loadRegion(SimpleMap m, int x, int y, int w, int h,
+			ForkJoinPool pool) {
+		if (b == null) {
+			return 0;
+		}
+		int cx0 = Math.max(x / chunkSize, 0);
+		int cy0 = Math.max(y / chunkSize, 0);
+		int cx1 = Math.min((x + w - 1) / chunkSize, chunksX - 1);
+		int cy1 = Math.min((y + h - 1) / chunkSize, chunksY - 1);
+		int count = 0;
+		if (pool == null) {
+			for (int cy = cy0; cy <= cy1; cy++) {
+				for (int cx = cx0; cx <= cx1; cx++) {
+					count += loadChunk(m, cx, cy);
+				}
+			}
+			return count;
+		}
+
+		List<Callable<Decoded>> tasks = new ArrayList<Callable<Decoded>>();
+		for (int cy = cy0; cy <= cy1; cy++) {
+			for (int cx = cx0; cx <= cx1; cx++) {
+				final int x0 = cx, y0 = cy;
+				tasks.add(new Callable<Decoded>() {
+					@Override
+					public Decoded call() throws Exception {
+						return decode(x0, y0);
+					}
+				});
+			}
+		}
+		try {
+			for (Future<Decoded> d : pool.invokeAll(tasks)) {
+				count += add(m, d.get());
+			}
+		} catch (Exception e) {
+			System.out.println("Error: Couldn't read region.");
+			e.printStackTrace();
+		}
+		return count;
+	}
+
+	/**
+	 * Add the objects of a single chunk to a map.
+	 * 
+	 * @param m
+	 *            The map to add the objects to.
+	 * @param cx
+	 *            The x index of the chunk.
+	 * @param cy
+	 *            The y index of the chunk.
+	 * @return The number of objects read.
+	 */
+	public int loadChunk(SimpleMap m, int cx, int cy) {
+		if (b == null || cx < 0 || cy < 0 || cx >= chunksX || cy >= chunksY) {
+			return 0;
+		}
+		try {
+			return add(m, decode(cx, cy));
+		} catch (Exception e) {
+			System.out.println("Error: Couldn't read chunk " + cx + ", " + cy
+					+ ".");
+			e.printStackTrace();
+		}
+		return 0;
+	}
+
+	/*
+	 * Add decoded objects to a map. This is the only step that touches the
+	 * map, so it always runs on the calling thread.
+	 */
+	private static int add(SimpleMap m, Decoded d) {
+		int count = 0;
+		for (int n = 0; n < d.objects.length; n++) {
+			SimpleObject o = d.objects[n];
+			if (o != null) {
+				if (m.addSimpleObject(o, d.xs[n], d.ys[n])) {
+					count++;
+				} else if (o.pool != null) {
+					o.pool.release(o);
+				}
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Inflate a chunk and create its objects. Safe to run on several threads
+	 * at once, since every read goes through its own view of the buffer.
+	 */
+	private Decoded decode(int cx, int cy) throws IOException,
+			DataFormatException {
+		int e = index + (cy * chunksX + cx) * entry;
+		Decoded d = new Decoded(b.getInt(e + 4));
+		ByteBuffer in = b.duplicate();
+		in.position(b.getInt(e));
+		if (compression == DEFLATE) {
+			byte[] packed = new byte[b.getInt(e + 8)];
+			in.get(packed);
+			byte[] raw = new byte[b.getInt(e + 12)];
+			Inflater inf = new Inflater();
+			try {
+				inf.setInput(packed);
+				// inflate() may stop early, so keep going until the stream
+				// ends, and check that it fills the chunk exactly.
+				byte[] extra = new byte[1];
+				int length = 0;
+				while (!inf.finished()) {
+					int k = length < raw.length ? inf.inflate(raw, length,
+							raw.length - length) : inf.inflate(extra);
+					if (k == 0 && (inf.needsInput() || inf.needsDictionary())) {
+						break;
+					}
+					length += k;
+				}
+				if (!inf.finished() || length != raw.length) {
+					throw new DataFormatException("Chunk " + cx + ", " + cy
+							+ " inflated to " + length + " bytes instead of "
+							+ raw.length);
+				}
+			} finally {
+				inf.end();
+			}
+			in = ByteBuffer.wrap(raw);
+		}
+		for (int n = 0; n < d.objects.length; n++) {
+			int key = readVarInt(in);
+			String s = description(readVarInt(in));
+			d.xs[n] = readVarInt(in);
+			d.ys[n] = readVarInt(in);
+			d.objects[n] = swf.createSimpleObject(key, s);
+		}
+		return d;
+	}
+
+	/*
+	 * Strings are immutable, so two threads decoding the same description at
+	 * once is harmless.
+	 */
+	private String description(int n) {
+		String s = table[n];
+		if (s == null) {
+			ByteBuffer in = b.duplicate();
+			in.position(b.getInt(strings + n * 4));
+			byte[] bytes = new byte[in.getInt()];
+			in.get(bytes);
+			s = new String(bytes, StandardCharsets.UTF_8);
+			table[n] = s;
+		}
+		return s;
+	}
+
+	/**
+	 * @return The width of the map in cells.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The height of the map in cells.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return The width and height of a chunk in cells.
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @return The compression of the chunks, NONE or DEFLATE.
+	 */
+	public int getCompression() {
+		return compression;
+	}
+
+	/**
+	 * Close the file. The mapped memory is released once it is garbage
+	 * collected.
+	 */
+	public void close() {
+		b = null;
+		try {
+			if (raf != null) {
+				raf.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		raf = null;
+	}
+
+	/**
+	 * Write a map divided into uncompressed chunks of CHUNK_SIZE cells.
+	 * 
+	 * @see #saveSimpleMap(File, SimpleWorldFactory, SimpleMap, int, int)
+	 */
+	public static boolean saveSimpleMap(File f, SimpleWorldFactory swf,
+			SimpleMap m) {
+		return saveSimpleMap(f, swf, m, CHUNK_SIZE, NONE);
+	}
+
+	/**
+	 * Write a map to a chunked map file.
+	 * 
+	 * @param f
+	 *            The file, which is overwritten.
+	 * @param swf
+	 *            The factory that gives the keys of the objects.
+	 * @param m
+	 *            The map to save.
+	 * @param chunkSize
+	 *            The width and height of a chunk in cells.
+	 * @param compression
+	 *            NONE to map chunks straight from the file, or DEFLATE for
+	 *            smaller files whose chunks are inflated when loaded.
+	 * @return True if the map was saved successfully.
+	 */
+	public static boolean saveSimpleMap(File f, SimpleWorldFactory swf,
+			SimpleMap m, int chunkSize, int compression) {
+		final int width = m.map[0].length, height = m.map.length;
+		final int chunksX = (width + chunkSize - 1) / chunkSize;
+		final int chunksY = (height + chunkSize - 1) / chunkSize;
+
+		// Sort the objects into chunks and collect the descriptions.
+		List<List<SimpleObject>> chunks = new ArrayList<List<SimpleObject>>();
+		for (int n = 0; n < chunksX * chunksY; n++) {
+			chunks.add(new ArrayList<SimpleObject>());
+		}
+		Map<String, Integer> strings = new HashMap<String, Integer>();
+		List<String> table = new ArrayList<String>();
+		for (SimpleObject s = m.getDrawBegin(); s != null; s = s.drawNext) {
+			if (swf.getKey(s) != -1) {
+				int cx = Math.min(Math.max(s.coor_x / m.cellWidth, 0),
+						width - 1) / chunkSize;
+				int cy = Math.min(Math.max(s.coor_y / m.cellHeight, 0),
+						height - 1) / chunkSize;
+				chunks.get(cy * chunksX + cx).add(s);
+				String d = s.getDescription();
+				if (!strings.containsKey(d)) {
+					strings.put(d, table.size());
+					table.add(d);
+				}
+			}
+		}
+
+		try {
+			// Encode the descriptions and chunks first to learn the offsets.
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			DataOutputStream dO = new DataOutputStream(body);
+			int start = 36 + table.size() * 4 + chunksX * chunksY * 16;
+			int[] stringOffsets = new int[table.size()];
+			for (int n = 0; n < stringOffsets.length; n++) {
+				stringOffsets[n] = start + dO.size();
+				byte[] bytes = table.get(n).getBytes(StandardCharsets.UTF_8);
+				dO.writeInt(bytes.length);
+				dO.write(bytes);
+			}
+
+			Comparator<SimpleObject> byRow = new Comparator<SimpleObject>() {
+				@Override
+				public int compare(SimpleObject a, SimpleObject b) {
+					if (a.coor_y != b.coor_y) {
+						return a.coor_y < b.coor_y ? -1 : 1;
+					}
+					return a.coor_x < b.coor_x ? -1 : (a.coor_x == b.coor_x ? 0
+							: 1);
+				}
+			};
+			int[] chunkIndex = new int[chunks.size() * 4];
+			ByteArrayOutputStream raw = new ByteArrayOutputStream();
+			DataOutputStream rO = new DataOutputStream(raw);
+			Deflater def = new Deflater();
+			byte[] packed = new byte[4096];
+			for (int n = 0; n < chunks.size(); n++) {
+				SimpleObject[] sorted = chunks.get(n).toArray(
+						new SimpleObject[0]);
+				Arrays.sort(sorted, byRow);
+				raw.reset();
+				for (SimpleObject s : sorted) {
+					SimpleMapIO.writeVarInt(rO, swf.getKey(s));
+					SimpleMapIO.writeVarInt(rO, strings.get(s.getDescription()));
+					SimpleMapIO.writeVarInt(rO, s.coor_x);
+					SimpleMapIO.writeVarInt(rO, s.coor_y);
+				}
+				rO.flush();
+
+				chunkIndex[n * 4] = start + dO.size();
+				chunkIndex[n * 4 + 1] = sorted.length;
+				chunkIndex[n * 4 + 3] = raw.size();
+				if (compression == DEFLATE) {
+					def.reset();
+					def.setInput(raw.toByteArray());
+					def.finish();
+					int before = dO.size();
+					while (!def.finished()) {
+						dO.write(packed, 0, def.deflate(packed));
+					}
+					chunkIndex[n * 4 + 2] = dO.size() - before;
+				} else {
+					raw.writeTo(dO);
+					chunkIndex[n * 4 + 2] = raw.size();
+				}
+			}
+			def.end();
+			dO.flush();
+
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(f, false)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(width);
+				out.writeInt(height);
+				out.writeInt(m.cellWidth);
+				out.writeInt(m.cellHeight);
+				out.writeInt(chunkSize);
+				out.writeInt(table.size());
+				out.writeInt(compression);
+				for (int offset : stringOffsets) {
+					out.writeInt(offset);
+				}
+				for (int n : chunkIndex) {
+					out.writeInt(n);
+				}
+				body.writeTo(out);
+			} finally {
+				out.close();
+			}
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	/*
+	 * The ByteBuffer version of SimpleMapIO.readVarInt.
+	 */
+	static int readVarInt(ByteBuffer in) throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.get() & 0xFF;
+			v |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return v;
+			}
+		}
+		throw new IOException("Malformed varint.");
+	}
+}
@@ -0,0 +1,644 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A compression codec for map and factory files. A file written with a codec
+ * begins with a small header naming the codec, so {@link #unwrap(InputStream)}
+ * can read any file without being told how it was written. Gzip needs no
+ * header, so older versions of the engine can still decompress files written
+ * with {@link #DEFAULT}. Whether they can read the map inside depends on its
+ * format version, see {@link SimpleMapIO#VERSION}.
+ * 
+ * The header of every codec but gzip is:
+ * 
+ * &lt; int: MAGIC &gt;<br>
+ * &lt; byte: the id of the codec &gt;<br>
+ * &lt; byte: the level of the codec &gt;<br>
+ * 
+ * Choose a codec for the use of the file, for example {@link #FAST} for saves
+ * made while the game is running, and {@link #SMALL} for maps shipped with
+ * the game:
+ * 
+ * <pre>
+ * <code>
+ * SimpleMapIO.saveSimpleMap(file, factory, map, SimpleCodec.SMALL);
+ * </code>
+ * </pre>
+ * 
+ * @author Brian Nakayama
+ * @see SimpleMapIO#setCodec(SimpleCodec)
+ * @see SimpleFactoryIO#setCodec(SimpleCodec)
+ */
+public abstract class SimpleCodec {
+
+	/**
+	 * The ids of the codecs, written in the header of a file.
+	 */
+	public static final int STORE = 0, DEFLATE = 1, LZ = 2, GZIP = 3;
+
+	static final int MAGIC = 0xF055AA5A;
+
+	private static final int BUFFER = 1 << 13;
+
+	/**
+	 * No compression.
+	 */
+	public static final SimpleCodec NONE = new Store();
+	/**
+	 * The pure Java LZ codec, which compresses several times faster than
+	 * deflate and decompresses faster still, for larger files.
+	 */
+	public static final SimpleCodec FAST = new Lz();
+	/**
+	 * Gzip at its default level. This is the codec files have always been
+	 * written with, and the only one older versions of the engine can
+	 * decompress.
+	 */
+	public static final SimpleCodec DEFAULT = new Gzip();
+	/**
+	 * Raw deflate at its best compression, for the smallest files.
+	 */
+	public static final SimpleCodec SMALL = new Deflate(Deflater.BEST_COMPRESSION);
+
+	private final int id, level;
+
+	private SimpleCodec(int id, int level) {
+		this.id = id;
+		this.level = level;
+	}
+
+	/**
+	 * Get a raw deflate codec.
+	 * 
+	 * @param level
+	 *            The level of compression, from 0 (none) to 9 (best).
+	 * @return The codec.
+	 */
+	public static SimpleCodec deflate(int level) {
+		if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("Deflate level " + level);
+		}
+		return new Deflate(level);
+	}
+
+	/**
+	 * Get the codec with an id, as written in the header of a file.
+	 * 
+	 * @param id
+	 *            The id of the codec.
+	 * @param level
+	 *            The level of the codec, which only matters for deflate.
+	 * @return The codec, or null if the id is unknown.
+	 */
+	public static SimpleCodec get(int id, int level) {
+		switch (id) {
+		case STORE:
+			return NONE;
+		case DEFLATE:
+			return new Deflate(Math.max(Deflater.NO_COMPRESSION,
+					Math.min(level, Deflater.BEST_COMPRESSION)));
+		case LZ:
+			return FAST;
+		case GZIP:
+			return DEFAULT;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Write the header of this codec to a stream, and return a buffered stream
+	 * that compresses what is written to it. Closing the returned stream
+	 * finishes the compression and closes the stream it was given.
+	 * 
+	 * @param out
+	 *            The stream to write to, usually buffered.
+	 * @return The compressing stream.
+	 * @throws IOException
+	 *             If the header couldn't be written.
+	 */
+	public OutputStream wrap(OutputStream out) throws IOException {
+		if (id != GZIP) {
+			DataOutputStream d = new DataOutputStream(out);
+			d.writeInt(MAGIC);
+			d.writeByte(id);
+			d.writeByte(level);
+		}
+		if (id == STORE) {
+			return out;
+		}
+		// Deflate is called once per write, so small writes are gathered.
+		return new BufferedOutputStream(compress(out), BUFFER);
+	}
+
+	/**
+	 * Read the header of a stream, and return a stream that decompresses it
+	 * with the codec named by the header. The returned stream is buffered.
+	 * Streams beginning with neither a
+	 * header nor the gzip magic number are not compressed, and are returned
+	 * as they are.
+	 * 
+	 * @param in
+	 *            The stream to read from.
+	 * @return The decompressing stream.
+	 * @throws IOException
+	 *             If the header names an unknown codec.
+	 */
+	public static InputStream unwrap(InputStream in) throws IOException {
+		if (!in.markSupported()) {
+			in = new BufferedInputStream(in);
+		}
+		in.mark(6);
+		byte[] head = new byte[6];
+		int read = 0;
+		for (int n; read < head.length
+				&& (n = in.read(head, read, head.length - read)) > 0; read += n) {
+		}
+		int magic = ((head[0] & 0xFF) << 24) | ((head[1] & 0xFF) << 16)
+				| ((head[2] & 0xFF) << 8) | (head[3] & 0xFF);
+		if (read == head.length && magic == MAGIC) {
+			SimpleCodec c = get(head[4], head[5]);
+			if (c == null) {
+				throw new IOException("Unknown codec " + head[4] + ".");
+			}
+			return c == NONE ? in : new BufferedInputStream(c.decompress(in),
+					BUFFER);
+		}
+		in.reset();
+		if (read >= 2
+				&& ((head[0] & 0xFF) | ((head[1] & 0xFF) << 8)) == GZIPInputStream.GZIP_MAGIC) {
+			return new BufferedInputStream(DEFAULT.decompress(in), BUFFER);
+		}
+		return in;
+	}
+
+	/**
+	 * Get a stream that compresses what is written to it, without a header.
+	 * 
+	 * @param out
+	 *            The stream to write to.
+	 * @return The compressing stream.
+	 * @throws IOException
+	 *             If the stream couldn't be created.
+	 */
+	public abstract OutputStream compress(OutputStream out) throws IOException;
+
+	/**
+	 * Get a stream that decompresses a stream written by
+	 * {@link #compress(OutputStream)}.
+	 * 
+	 * @param in
+	 *            The stream to read from.
+	 * @return The decompressing stream.
+	 * @throws IOException
+	 *             If the stream couldn't be created.
+	 */
+	public abstract InputStream decompress(InputStream in) throws IOException;
+
+	/**
+	 * Get the id of the codec.
+	 * 
+	 * @return STORE, DEFLATE, LZ or GZIP.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Get the level of the codec.
+	 * 
+	 * @return The level of deflate, otherwise 0.
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	@Override
+	public String toString() {
+		switch (id) {
+		case STORE:
+			return "none";
+		case DEFLATE:
+			return "deflate-" + level;
+		case LZ:
+			return "lz";
+		default:
+			return "gzip";
+		}
+	}
+
+	private static class Store extends SimpleCodec {
+		Store() {
+			super(STORE, 0);
+		}
+
+		@Override
+		public OutputStream compress(OutputStream out) {
+			return out;
+		}
+
+		@Override
+		public InputStream decompress(InputStream in) {
+			return in;
+		}
+	}
+
+	private static class Gzip extends SimpleCodec {
+		Gzip() {
+			super(GZIP, 0);
+		}
+
+		@Override
+		public OutputStream compress(OutputStream out) throws IOException {
+			return new GZIPOutputStream(out);
+		}
+
+		@Override
+		public InputStream decompress(InputStream in) throws IOException {
+			return new GZIPInputStream(in);
+		}
+	}
+
+	private static class Deflate extends SimpleCodec {
+		Deflate(int level) {
+			super(DEFLATE, level);
+		}
+
+		@Override
+		public OutputStream compress(OutputStream out) {
+			final Deflater def = new Deflater(getLevel(), true);
+			return new DeflaterOutputStream(out, def, Lz.BLOCK) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						def.end();
+					}
+				}
+			};
+		}
+
+		@Override
+		public InputStream decompress(InputStream in) {
+			final Inflater inf = new Inflater(true);
+			return new InflaterInputStream(in, inf, Lz.BLOCK) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						inf.end();
+					}
+				}
+			};
+		}
+	}
+
+	/*
+	 * A byte oriented LZ77 codec in the style of LZ4. The stream is split into
+	 * blocks of up to 64 KiB that are compressed on their own:
+	 * 
+	 * < varint: length of the block, or 0 at the end of the stream >
+	 * < varint: length compressed, equal to the length if stored >
+	 * < bytes: the block >
+	 * 
+	 * A compressed block is a list of sequences. Each begins with a token
+	 * holding the number of literals in its high 4 bits and the length of
+	 * the match minus 4 in its low 4 bits. A value of 15 is continued by
+	 * bytes added to it until one is less than 255. Then come the literals,
+	 * a 2 byte little endian offset back to the match, and the rest of the
+	 * match length. The last sequence has only literals.
+	 */
+	private static class Lz extends SimpleCodec {
+
+		static final int BLOCK = 1 << 16;
+		private static final int HASH_BITS = 14;
+		// The last bytes of a block are always literals, so matches never
+		// need to check the end of the block.
+		private static final int LAST_LITERALS = 5, MATCH_LIMIT = 12;
+
+		Lz() {
+			super(LZ, 0);
+		}
+
+		@Override
+		public OutputStream compress(final OutputStream out) {
+			return new OutputStream() {
+				private final DataOutputStream d = new DataOutputStream(out);
+				private final byte[] b = new byte[BLOCK];
+				private final byte[] c = new byte[BLOCK];
+				private final int[] table = new int[1 << HASH_BITS];
+				private int count = 0;
+				private boolean closed = false;
+
+				@Override
+				public void write(int v) throws IOException {
+					if (count == BLOCK) {
+						block();
+					}
+					b[count++] = (byte) v;
+				}
+
+				@Override
+				public void write(byte[] src, int off, int len)
+						throws IOException {
+					while (len > 0) {
+						if (count == BLOCK) {
+							block();
+						}
+						int n = Math.min(len, BLOCK - count);
+						System.arraycopy(src, off, b, count, n);
+						count += n;
+						off += n;
+						len -= n;
+					}
+				}
+
+				private void block() throws IOException {
+					if (count == 0) {
+						return;
+					}
+					int n = Lz.compress(b, count, c, table);
+					SimpleMapIO.writeVarInt(d, count);
+					if (n < 0) {
+						SimpleMapIO.writeVarInt(d, count);
+						d.write(b, 0, count);
+					} else {
+						SimpleMapIO.writeVarInt(d, n);
+						d.write(c, 0, n);
+					}
+					count = 0;
+				}
+
+				@Override
+				public void flush() throws IOException {
+					block();
+					d.flush();
+				}
+
+				@Override
+				public void close() throws IOException {
+					if (!closed) {
+						closed = true;
+						block();
+						SimpleMapIO.writeVarInt(d, 0);
+						d.close();
+					}
+				}
+			};
+		}
+
+		@Override
+		public InputStream decompress(final InputStream in) {
+			return new InputStream() {
+				private final DataInputStream d = new DataInputStream(in);
+				private final byte[] b = new byte[BLOCK];
+				private final byte[] c = new byte[BLOCK];
+				private int position = 0, count = 0;
+				private boolean end = false;
+
+				@Override
+				public int read() throws IOException {
+					if (position == count && !block()) {
+						return -1;
+					}
+					return b[position++] & 0xFF;
+				}
+
+				@Override
+				public int read(byte[] dst, int off, int len) throws IOException {
+					if (len == 0) {
+						return 0;
+					} else if (position == count && !block()) {
+						return -1;
+					}
+					int n = Math.min(len, count - position);
+					System.arraycopy(b, position, dst, off, n);
+					position += n;
+					return n;
+				}
+
+				@Override
+				public int available() {
+					return count - position;
+				}
+
+				private boolean block() throws IOException {
+					if (end) {
+						return false;
+					}
+					int length = SimpleMapIO.readVarInt(d);
+					if (length == 0) {
+						end = true;
+						return false;
+					}
+					int compressed = SimpleMapIO.readVarInt(d);
+					if (length > BLOCK || compressed > length) {
+						throw new IOException("Corrupt LZ block.");
+					}
+					if (compressed == length) {
+						d.readFully(b, 0, length);
+					} else {
+						d.readFully(c, 0, compressed);
+						Lz.decompress(c, compressed, b, length);
+					}
+					position = 0;
+					count = length;
+					return true;
+				}
+
+				@Override
+				public void close() throws IOException {
+					d.close();
+				}
+			};
+		}
+
+		private static int hash(byte[] b, int i) {
+			int v = (b[i] & 0xFF) | ((b[i + 1] & 0xFF) << 8)
+					| ((b[i + 2] & 0xFF) << 16) | ((b[i + 3] & 0xFF) << 24);
+			return (v * -1640531535) >>> (32 - HASH_BITS);
+		}
+
+		private static boolean same4(byte[] b, int i, int j) {
+			return b[i] == b[j] && b[i + 1] == b[j + 1] && b[i + 2] == b[j + 2]
+					&& b[i + 3] == b[j + 3];
+		}
+
+		/*
+		 * Compress a block into dst, returning the compressed length, or -1 if
+		 * it wouldn't be smaller than the block.
+		 */
+		static int compress(byte[] src, int len, byte[] dst, int[] table) {
+			Arrays.fill(table, -1);
+			int limit = len - MATCH_LIMIT;
+			int ip = 0, anchor = 0, op = 0;
+			while (ip < limit) {
+				int h = hash(src, ip);
+				int ref = table[h];
+				table[h] = ip;
+				if (ref < 0 || !same4(src, ip, ref)) {
+					// Skip faster through data that doesn't compress.
+					ip += 1 + ((ip - anchor) >>> 6);
+					continue;
+				}
+				while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+					ip--;
+					ref--;
+				}
+				int match = 4;
+				int end = len - LAST_LITERALS;
+				while (ip + match < end && src[ip + match] == src[ref + match]) {
+					match++;
+				}
+
+				int literals = ip - anchor;
+				if (op + literals + literals / 255 + match / 255 + 8 >= len) {
+					return -1;
+				}
+				int token = op++;
+				int t;
+				if (literals >= 15) {
+					t = 15 << 4;
+					op = length(dst, op, literals - 15);
+				} else {
+					t = literals << 4;
+				}
+				System.arraycopy(src, anchor, dst, op, literals);
+				op += literals;
+				int offset = ip - ref;
+				dst[op++] = (byte) offset;
+				dst[op++] = (byte) (offset >>> 8);
+				if (match - 4 >= 15) {
+					t |= 15;
+					op = length(dst, op, match - 4 - 15);
+				} else {
+					t |= match - 4;
+				}
+				dst[token] = (byte) t;
+
+				ip += match;
+				anchor = ip;
+				if (ip - 2 < limit) {
+					table[hash(src, ip - 2)] = ip - 2;
+				}
+			}
+
+			int literals = len - anchor;
+			if (op + literals + literals / 255 + 2 >= len) {
+				return -1;
+			}
+			if (literals >= 15) {
+				dst[op++] = (byte) (15 << 4);
+				op = length(dst, op, literals - 15);
+			} else {
+				dst[op++] = (byte) (literals << 4);
+			}
+			System.arraycopy(src, anchor, dst, op, literals);
+			return op + literals;
+		}
+
+		private static int length(byte[] dst, int op, int v) {
+			while (v >= 255) {
+				dst[op++] = (byte) 255;
+				v -= 255;
+			}
+			dst[op++] = (byte) v;
+			return op;
+		}
+
+		/*
+		 * Decompress a block of a known length.
+		 */
+		static void decompress(byte[] src, int len, byte[] dst, int length)
+				throws IOException {
+			try {
+				int ip = 0, op = 0;
+				while (true) {
+					int token = src[ip++] & 0xFF;
+					int literals = token >>> 4;
+					if (literals == 15) {
+						int v;
+						do {
+							v = src[ip++] & 0xFF;
+							literals += v;
+						} while (v == 255);
+					}
+					System.arraycopy(src, ip, dst, op, literals);
+					ip += literals;
+					op += literals;
+					if (ip >= len) {
+						break;
+					}
+
+					int offset = (src[ip++] & 0xFF) | ((src[ip++] & 0xFF) << 8);
+					int match = token & 15;
+					if (match == 15) {
+						int v;
+						do {
+							v = src[ip++] & 0xFF;
+							match += v;
+						} while (v == 255);
+					}
+					match += 4;
+					int ref = op - offset;
+					if (offset == 0 || ref < 0) {
+						throw new IOException("Corrupt LZ block.");
+					}
+					if (offset >= match) {
+						System.arraycopy(dst, ref, dst, op, match);
+						op += match;
+					} else {
+						// The match overlaps what it copies, so repeat it.
+						for (int end = op + match; op < end; op++) {
+							dst[op] = dst[ref++];
+						}
+					}
+				}
+				if (op != length) {
+					throw new IOException("Corrupt LZ block.");
+				}
+			} catch (IndexOutOfBoundsException e) {
+				throw new EOFException("Corrupt LZ block.");
+			}
+		}
+	}
+}
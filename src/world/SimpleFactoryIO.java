@@ -4,19 +4,30 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 
 public class SimpleFactoryIO {
+
+	/**
+	 * The version of the format written by
+	 * {@link #writeFactory(SimpleWorldFactory)}.
+	 */
+	public static final int VERSION = 2;
+
+	static final int MAGIC = 0xF055AA46;
+
 	private File f;
 	private DataOutputStream dO;
 	private DataInputStream dI;
 	private boolean canPrint = false, canRead = false;
+	private SimpleCodec codec = SimpleCodec.DEFAULT;
 
 	/**
 	 * Create a new Factory IO object with the specified path.
@@ -39,6 +50,28 @@ public class SimpleFactoryIO {
 		return swf;
 	}
 	
+	/**
+	 * Load a factory from a stream, for example an asset of a
+	 * {@link pack.AssetPack}. The stream is closed.
+	 * 
+	 * @param in
+	 *            The stream holding a factory file.
+	 * @return The factory, or null if it couldn't be read.
+	 */
+	public static SimpleWorldFactory loadFactory(InputStream in) {
+		SimpleFactoryIO s = new SimpleFactoryIO((File) null);
+		try {
+			s.dI = new DataInputStream(SimpleCodec.unwrap(in));
+			s.canRead = true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		SimpleWorldFactory swf = s.readFactory();
+		s.closeFactory();
+		return swf;
+	}
+
 	public static boolean saveFactory(File f, SimpleWorldFactory swf){
 		SimpleFactoryIO s = new SimpleFactoryIO(f);
 		s.openFactory(false);
@@ -46,6 +79,38 @@ public class SimpleFactoryIO {
 		s.closeFactory();
 		return saved;
 	}
+
+	/**
+	 * Save a factory compressed with a codec.
+	 * 
+	 * @param f
+	 *            The file to save to.
+	 * @param swf
+	 *            The factory to save.
+	 * @param codec
+	 *            The codec.
+	 * @return True if the factory was saved successfully.
+	 */
+	public static boolean saveFactory(File f, SimpleWorldFactory swf,
+			SimpleCodec codec) {
+		SimpleFactoryIO s = new SimpleFactoryIO(f);
+		s.setCodec(codec);
+		s.openFactory(false);
+		boolean saved = s.writeFactory(swf);
+		s.closeFactory();
+		return saved;
+	}
+
+	/**
+	 * Set the codec used the next time the file is opened for writing. Files
+	 * are read with the codec they were written with.
+	 * 
+	 * @param codec
+	 *            The codec, {@link SimpleCodec#DEFAULT} if not set.
+	 */
+	public void setCodec(SimpleCodec codec) {
+		this.codec = codec;
+	}
 	
 	/**
 	 * Open a factory stream.
@@ -85,15 +150,13 @@ public class SimpleFactoryIO {
 			if (read) {
 				FileInputStream fis = new FileInputStream(f);
 				BufferedInputStream bis = new BufferedInputStream(fis);
-				GZIPInputStream zis = new GZIPInputStream(bis);
-				dI = new DataInputStream(zis);
+				dI = new DataInputStream(SimpleCodec.unwrap(bis));
 				
 				canRead = true;
 			} else {
 				FileOutputStream fos = new FileOutputStream(f, false);
 				BufferedOutputStream bos = new BufferedOutputStream(fos);
-				GZIPOutputStream zos = new GZIPOutputStream(bos);
-				dO = new DataOutputStream(zos);
+				dO = new DataOutputStream(codec.wrap(bos));
 				canPrint = true;
 			}
 
@@ -106,47 +169,41 @@ public class SimpleFactoryIO {
 	}
 
 	/**
-	 * Write a map to a file.
-	 * 
-	 * This method can save the specific properties of a SimpleObject through
-	 * its getDescription() method which the user can override. This method is
-	 * not optimized for efficiency, and it does not save any global state
-	 * associated with the SimpleWorld such as which SimpleWorldObject should be
-	 * used, the background, or which object SimpleWorld should follow with the camera. The user
-	 * should implement their own methods for saving game state. This method is
-	 * best used to load the initial state of the game.
+	 * Write the classes of a factory to a file, in the order of their keys.
 	 * 
+	 * The format of the saved file is:
 	 * 
-	 * Objects with an key of -1 will not be saved.
-	 * 
-	 * 
-	 * The format of the saved file will be:
-	 * 
-	 * &lt; int: number of objects &gt;<br>
-	 * &lt; int: map width &gt;<br>
-	 * &lt; int: map height &gt; <br>
-	 * &lt; int: map cellWidth &gt; <br>
-	 * &lt; int: map cellHeight &gt; <br>
-	 * 
-	 * # count = |map_objects| <br>
-	 * for (s in map_objects) do <br>
-	 * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: key &gt;<br>
-	 * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: s.coor_x &gt;<br>
-	 * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: s.coor_y &gt;<br>
-	 * &nbsp;&nbsp;&nbsp;&nbsp;&lt; utf_string: s.description &gt; <br>
+	 * &lt; utf_string: "" &gt;<br>
+	 * &lt; int: MAGIC &gt;<br>
+	 * &lt; varint: version &gt;<br>
+	 * &lt; varint: number of classes &gt;<br>
+	 * for (c in classes) do <br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: length &gt; &lt; bytes: the name of
+	 * c in UTF-8, or nothing if c couldn't be loaded &gt;<br>
 	 * done.
 	 * 
-	 * @param m
-	 *            The map to be saved.
-	 * @return True if the map was saved successfully.
-	 * @see SimpleObject
-	 * @see SimpleWorldFactory#getKey(SimpleObject)
-	 * @see SimpleMap
+	 * Files written before this format held {@link SimpleWorldFactory#toString()}
+	 * as a single utf_string, which is limited to 65535 bytes, so older
+	 * readers see an empty factory.
+	 * 
+	 * @param w
+	 *            The factory to be saved.
+	 * @return True if the factory was saved successfully.
+	 * @see SimpleWorldFactory#getName(int)
 	 */
 	public boolean writeFactory(SimpleWorldFactory w) {
 		try {
 			if (canPrint) {
-				dO.writeUTF(w.toString());
+				dO.writeUTF("");
+				dO.writeInt(MAGIC);
+				SimpleMapIO.writeVarInt(dO, VERSION);
+				int size = w.size();
+				SimpleMapIO.writeVarInt(dO, size);
+				for (int c = 0; c < size; c++) {
+					byte[] name = w.getName(c).getBytes(StandardCharsets.UTF_8);
+					SimpleMapIO.writeVarInt(dO, name.length);
+					dO.write(name);
+				}
 				dO.flush();
 				return true;
 			}
@@ -157,17 +214,40 @@ public class SimpleFactoryIO {
 	}
 
 	/**
-	 * Read a mp from a file. Reverses the process defined by
-	 * SimpleMapIO.writeMap.
+	 * Read a factory from a file. Reverses the process defined by
+	 * SimpleFactoryIO.writeFactory, and reads the older format of a single
+	 * String. Each class is loaded the first time its key is used.
 	 * 
-	 * @return The SimpleMap represented by the file.
+	 * @return The SimpleWorldFactory represented by the file.
 	 * @see SimpleWorldFactory
 	 */
 	public SimpleWorldFactory readFactory() {
 		try {
 			if (canRead) {
 				String s = dI.readUTF();
-				return new SimpleWorldFactory(s);
+				if (s.length() > 0) {
+					return new SimpleWorldFactory(s);
+				}
+				int magic;
+				try {
+					magic = dI.readInt();
+				} catch (EOFException e) {
+					// An empty factory in the older format.
+					return new SimpleWorldFactory();
+				}
+				int version = SimpleMapIO.readVarInt(dI);
+				if (magic != MAGIC || version != VERSION) {
+					System.out.println("Error: Unknown factory version "
+							+ version + ".");
+					return null;
+				}
+				SimpleWorldFactory w = new SimpleWorldFactory();
+				for (int size = SimpleMapIO.readVarInt(dI); size > 0; size--) {
+					byte[] name = new byte[SimpleMapIO.readVarInt(dI)];
+					dI.readFully(name);
+					w.registerName(new String(name, StandardCharsets.UTF_8));
+				}
+				return w;
 			}
 		} catch (Exception e) {
 			System.out.println("Error: Couldn't read factory object.");
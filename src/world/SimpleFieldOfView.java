@@ -0,0 +1,325 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes which cells of a SimpleMap can be seen by a set of observers, using
+ * recursive shadowcasting over the collision grid. Solids block the view
+ * unless their id is marked transparent.
+ * 
+ * The view of an observer is only computed again when the observer enters a
+ * new cell, or when a solid enters or leaves a cell within its radius. Each
+ * cell counts the observers that see it, so adding an observer or computing
+ * one view again never touches the views of the others.
+ * 
+ * Give the field of view to {@link SimpleWorld#setFieldOfView(SimpleFieldOfView)}
+ * to stop drawing the objects in cells that no observer can see.
+ * 
+ * @author Brian Nakayama
+ */
+public class SimpleFieldOfView {
+
+	// The multipliers that transform the first octant into the other seven.
+	private static final int[][] OCTANTS = { { 1, 0, 0, -1, -1, 0, 0, 1 },
+			{ 0, 1, -1, 0, 0, -1, 1, 0 }, { 0, 1, 1, 0, 0, -1, -1, 0 },
+			{ 1, 0, 0, 1, -1, 0, 0, -1 } };
+
+	private static class Observer {
+		final SimpleObject o;
+		final int radius, size;
+		// The cells seen from the last origin, in a square around it.
+		final boolean[] seen;
+		int x = -1, y = -1;
+		boolean dirty = true;
+
+		Observer(SimpleObject o, int radius) {
+			this.o = o;
+			this.radius = radius;
+			this.size = radius * 2 + 1;
+			this.seen = new boolean[size * size];
+		}
+	}
+
+	private final SimpleMap m;
+	private final int width, height;
+	// The number of observers that see each cell.
+	private final short[] counts;
+	private final List<Observer> observers = new ArrayList<Observer>();
+	private final Set<Integer> transparent = new HashSet<Integer>();
+
+	/**
+	 * Create a field of view for a map and attach it to the map. A map has at
+	 * most one field of view, so this replaces any the map already had.
+	 * 
+	 * @param m
+	 *            The map whose solids block the view.
+	 */
+	public SimpleFieldOfView(SimpleMap m) {
+		this.m = m;
+		this.height = m.map.length;
+		this.width = m.map[0].length;
+		this.counts = new short[width * height];
+		m.fov = this;
+	}
+
+	/**
+	 * Add an observer. The observer sees from the cell that holds its
+	 * coordinates.
+	 * 
+	 * @param o
+	 *            The object that sees.
+	 * @param radius
+	 *            How far the object sees, in cells.
+	 */
+	public void addObserver(SimpleObject o, int radius) {
+		observers.add(new Observer(o, radius));
+	}
+
+	/**
+	 * Remove an observer and forget the cells only it could see.
+	 * 
+	 * @param o
+	 *            The object that sees.
+	 * @return True iff the object was an observer.
+	 */
+	public boolean removeObserver(SimpleObject o) {
+		for (int n = 0; n < observers.size(); n++) {
+			Observer ob = observers.get(n);
+			if (ob.o == o) {
+				forget(ob);
+				observers.remove(n);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Let observers see through solids with an id. By default every solid
+	 * blocks the view.
+	 * 
+	 * @param id
+	 *            The id of the solids.
+	 * @param seeThrough
+	 *            True if the solids do not block the view.
+	 */
+	public void setTransparent(int id, boolean seeThrough) {
+		if (seeThrough) {
+			transparent.add(id);
+		} else {
+			transparent.remove(id);
+		}
+		for (Observer ob : observers) {
+			ob.dirty = true;
+		}
+	}
+
+	/**
+	 * Check if any observer can see a cell.
+	 * 
+	 * @param x
+	 *            The x cell of the map.
+	 * @param y
+	 *            The y cell of the map.
+	 * @return True iff the cell is visible. Cells off the map are not.
+	 */
+	public boolean isVisible(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height) {
+			return false;
+		}
+		return counts[y * width + x] > 0;
+	}
+
+	/**
+	 * Check if any observer can see an object, by the cell holding its
+	 * coordinates. Tile layers are always visible, and objects off the map
+	 * never are.
+	 * 
+	 * @param s
+	 *            The object.
+	 * @return True iff the object is visible.
+	 */
+	public boolean isVisible(SimpleObject s) {
+		if (s instanceof SimpleTileLayer) {
+			return true;
+		}
+		return isVisible(Math.floorDiv(s.coor_x, m.cellWidth),
+				Math.floorDiv(s.coor_y, m.cellHeight));
+	}
+
+	/**
+	 * Compute the views of the observers that moved to a new cell or whose
+	 * surroundings changed. SimpleWorld calls this once per frame.
+	 */
+	public void update() {
+		for (Observer ob : observers) {
+			if (ob.o.m != m) {
+				// The observer isn't on the map, so it sees nothing.
+				if (ob.x >= 0) {
+					forget(ob);
+				}
+				continue;
+			}
+			int x = Math.floorDiv(ob.o.coor_x, m.cellWidth);
+			int y = Math.floorDiv(ob.o.coor_y, m.cellHeight);
+			if (x < 0 || y < 0 || x >= width || y >= height) {
+				// Non-solids can leave the grid, and see nothing there.
+				if (ob.x >= 0) {
+					forget(ob);
+				}
+				continue;
+			}
+			if (ob.dirty || x != ob.x || y != ob.y) {
+				forget(ob);
+				ob.x = x;
+				ob.y = y;
+				see(ob, x, y);
+				ob.dirty = false;
+				final boolean[] seen = ob.seen;
+				for (int j = 0, n = 0; j < ob.size; j++) {
+					for (int i = 0; i < ob.size; i++, n++) {
+						if (seen[n]) {
+							counts[(y - ob.radius + j) * width + x - ob.radius
+									+ i]++;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stop following the map.
+	 */
+	public void detach() {
+		if (m.fov == this) {
+			m.fov = null;
+		}
+	}
+
+	/*
+	 * Called by the map when a solid enters or leaves a cell.
+	 */
+	void changed(int x, int y) {
+		for (Observer ob : observers) {
+			if (Math.abs(x - ob.x) <= ob.radius
+					&& Math.abs(y - ob.y) <= ob.radius) {
+				ob.dirty = true;
+			}
+		}
+	}
+
+	/*
+	 * Remove the cells seen from the last origin of an observer.
+	 */
+	private void forget(Observer ob) {
+		if (ob.x < 0) {
+			return;
+		}
+		final boolean[] seen = ob.seen;
+		for (int j = 0, n = 0; j < ob.size; j++) {
+			for (int i = 0; i < ob.size; i++, n++) {
+				if (seen[n]) {
+					seen[n] = false;
+					counts[(ob.y - ob.radius + j) * width + ob.x - ob.radius
+							+ i]--;
+				}
+			}
+		}
+		ob.x = -1;
+		ob.y = -1;
+	}
+
+	private void see(Observer ob, int x, int y) {
+		ob.seen[ob.radius * ob.size + ob.radius] = true;
+		for (int n = 0; n < 8; n++) {
+			cast(ob, x, y, 1, 1.0, 0.0, OCTANTS[0][n], OCTANTS[1][n],
+					OCTANTS[2][n], OCTANTS[3][n]);
+		}
+	}
+
+	private boolean blocks(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height) {
+			return true;
+		}
+		SimpleSolid s = m.map[y][x];
+		return s != null && !transparent.contains(s.id());
+	}
+
+	/*
+	 * Scan the rows of one octant from the origin, between the start and end
+	 * slopes, recursing around every solid that casts a shadow.
+	 */
+	private void cast(Observer ob, int cx, int cy, int row, double start,
+			double end, int xx, int xy, int yx, int yy) {
+		if (start < end) {
+			return;
+		}
+		final int r = ob.radius;
+		final int r2 = r * r + r;
+		double newStart = 0;
+		for (int j = row; j <= r; j++) {
+			boolean blocked = false;
+			int dy = -j;
+			for (int dx = -j; dx <= 0; dx++) {
+				final double lSlope = (dx - 0.5) / (dy + 0.5);
+				final double rSlope = (dx + 0.5) / (dy - 0.5);
+				if (start < rSlope) {
+					continue;
+				} else if (end > lSlope) {
+					break;
+				}
+
+				final int ox = dx * xx + dy * xy;
+				final int oy = dx * yx + dy * yy;
+				final int x = cx + ox;
+				final int y = cy + oy;
+				if (dx * dx + dy * dy <= r2 && x >= 0 && y >= 0 && x < width
+						&& y < height) {
+					ob.seen[(oy + r) * ob.size + ox + r] = true;
+				}
+
+				if (blocked) {
+					if (blocks(x, y)) {
+						newStart = rSlope;
+					} else {
+						blocked = false;
+						start = newStart;
+					}
+				} else if (blocks(x, y) && j < r) {
+					blocked = true;
+					cast(ob, cx, cy, j + 1, start, lSlope, xx, xy, yx, yy);
+					newStart = rSlope;
+				}
+			}
+			if (blocked) {
+				break;
+			}
+		}
+	}
+}
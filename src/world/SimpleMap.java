@@ -65,6 +65,19 @@ public class SimpleMap {
 	// Holds the last object in the list of that index.
 	int solidIndex;
 
+	// Counts since the last frame, published by SimpleWorld.
+	long collisionChecks = 0, rejectedMoves = 0, collisionCallbacks = 0;
+
+	// The cache of baked static objects, if SimpleWorld has enabled baking.
+	StaticLayerCache statics = null;
+
+	// The minimap and field of view following the collision grid, if any.
+	SimpleMinimap minimap = null;
+	SimpleFieldOfView fov = null;
+
+	// The journal recording the edits of the map, if any.
+	SimpleMapJournal journal = null;
+
 	/**
 	 * Basic constructor initiates the map with Z-indexes 0-15. Index 8 is saved
 	 * for SimpleSolid objects.
@@ -166,7 +179,16 @@ public class SimpleMap {
 		o.pre_cx = x;
 		o.coor_y = y;
 		o.pre_cy = y;
-		o.updates = SimpleObject.NORMAL;
+		o.z = z;
+		if (o.updates != SimpleObject.NO_UPDATES_NO_COLLIDES) {
+			o.updates = SimpleObject.NORMAL;
+		}
+		if (statics != null) {
+			statics.added(o);
+		}
+		if (journal != null) {
+			journal.added(o);
+		}
 		return true;
 	}
 
@@ -188,6 +210,7 @@ public class SimpleMap {
 		calculateCollisions(x, y, s);
 		if (s.collisions[0] == null) {
 			map[y_n][x_n] = s;
+			cellChanged(x_n, y_n);
 			s.drawPrevious = mapArray[y_n].drawPrevious;
 			s.drawNext = mapArray[y_n];
 			s.drawPrevious.drawNext = s;
@@ -200,9 +223,48 @@ public class SimpleMap {
 		s.pre_cx = x;
 		s.coor_y = y;
 		s.pre_cy = y;
+		s.z = solidIndex;
+		if (statics != null) {
+			statics.added(s);
+		}
+		if (journal != null) {
+			journal.added(s);
+		}
 		return true;
 	}
 
+	/**
+	 * Adds a layer of tiles at the z-index given. The layer covers the map
+	 * from its top left corner, and its blocking tiles are placed in the
+	 * collision grid of cells that do not already hold a solid.
+	 * 
+	 * @param l
+	 *            The layer to add to the map.
+	 * @param z
+	 *            The z-index
+	 * @return True iff the layer was successfully added.
+	 * @see SimpleTileLayer
+	 */
+	public boolean addTileLayer(SimpleTileLayer l, int z) {
+		if (addSimpleObject(l, 0, 0, z)) {
+			l.blockAll();
+			return true;
+		}
+		return false;
+	}
+
+	/*
+	 * Called whenever a solid enters or leaves a cell of the grid.
+	 */
+	void cellChanged(int x, int y) {
+		if (minimap != null) {
+			minimap.changed(x, y);
+		}
+		if (fov != null) {
+			fov.changed(x, y);
+		}
+	}
+
 	/**
 	 * Get the beginning of the drawList
 	 * 
@@ -261,6 +323,7 @@ public class SimpleMap {
 	public SimpleObject[] calculateCollisions(int x, int y, SimpleObject s) {
 		final int grid_x = x / cellWidth;
 		final int grid_y = y / cellHeight;
+		collisionChecks++;
 
 		s.collisions[0] = null;
 		s.collisions[1] = null;
@@ -344,6 +407,13 @@ public class SimpleMap {
 		zArray[solidIndex].drawNext.drawPrevious = zArray[solidIndex];
 		mapArray[mapArray.length - 1].drawNext = zArray[solidIndex + 1];
 		mapArray[mapArray.length - 1].drawNext.drawPrevious = mapArray[mapArray.length - 1];
+
+		if (statics != null) {
+			statics.attach();
+		}
+		if (journal != null) {
+			journal.cleared();
+		}
 	}
 
 	/**
@@ -358,7 +428,11 @@ public class SimpleMap {
 	 */
 	public boolean changeZIndex(SimpleObject o, int z) {
 		if (o.m == this) {
+			// Don't let the object return to its pool while it is moved.
+			SimpleObjectPool p = o.pool;
+			o.pool = null;
 			o.removeSelf();
+			o.pool = p;
 			return addSimpleObject(o, o.coor_x, o.coor_y, z);
 		}
 		return false;
@@ -30,8 +30,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -44,11 +51,49 @@ import java.util.zip.GZIPOutputStream;
  * @version 1.1
  */
 public class SimpleMapIO {
+
+	/**
+	 * The original format, a list of fixed size records. See
+	 * {@link #writeMap(SimpleMap, int)}.
+	 */
+	public static final int VERSION_1 = 1;
+	/**
+	 * The format with a header, a table of descriptions and variable length
+	 * positions sorted by row.
+	 */
+	public static final int VERSION_2 = 2;
+	/**
+	 * The format written in one pass by {@link SimpleMapWriter}, in frames
+	 * with descriptions stored the first time they are used.
+	 */
+	public static final int VERSION_3 = 3;
+	/**
+	 * Version 3 with the state written by
+	 * {@link SimpleObject#writeState(SimpleState)} after each object, for
+	 * saving games in progress.
+	 */
+	public static final int VERSION_4 = 4;
+	/**
+	 * The version written by {@link #writeMap(SimpleMap)}.
+	 * 
+	 * The version, not the codec, decides which builds can read a file: a
+	 * build can only read the versions it knows, whatever the file is
+	 * compressed with. Write with {@link #writeMap(SimpleMap, int)} at
+	 * {@link #VERSION_1} and {@link SimpleCodec#DEFAULT} for a file that
+	 * builds from before {@link #VERSION_2} must read.
+	 */
+	public static final int VERSION = VERSION_2;
+
+	// Versioned files begin with a negative int, where version 1 files begin
+	// with their count of objects.
+	static final int MAGIC = 0xF055AA55;
+
 	private File f;
 	private DataOutputStream dO;
 	private DataInputStream dI;
 	private boolean canPrint = false, canRead = false;
 	private SimpleWorldFactory swf;
+	private SimpleCodec codec = SimpleCodec.DEFAULT;
 
 	/**
 	 * Create a new IO object with the specified path.
@@ -73,6 +118,30 @@ public class SimpleMapIO {
 		return map;
 	}
 	
+	/**
+	 * Load a map from a stream, for example an asset of a
+	 * {@link pack.AssetPack}. The stream is closed.
+	 * 
+	 * @param in
+	 *            The stream holding a map file.
+	 * @param swf
+	 *            The factory of the objects of the map.
+	 * @return The map, or null if it couldn't be read.
+	 */
+	public static SimpleMap loadSimpleMap(InputStream in, SimpleWorldFactory swf) {
+		SimpleMapIO s = new SimpleMapIO((File) null, swf);
+		try {
+			s.dI = new DataInputStream(SimpleCodec.unwrap(in));
+			s.canRead = true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		SimpleMap map = s.readMap();
+		s.closeMap();
+		return map;
+	}
+
 	public static boolean saveSimpleMap(File f, SimpleWorldFactory swf, SimpleMap map){
 		SimpleMapIO s = new SimpleMapIO(f, swf);
 		s.openMap(false);
@@ -81,6 +150,43 @@ public class SimpleMapIO {
 		return saved;
 	}
 
+	/**
+	 * Save a map compressed with a codec.
+	 * 
+	 * @param f
+	 *            The file to save to.
+	 * @param swf
+	 *            The factory of the objects of the map.
+	 * @param map
+	 *            The map to save.
+	 * @param codec
+	 *            The codec, for example SimpleCodec.SMALL for maps shipped
+	 *            with a game.
+	 * @return True if the map was saved successfully.
+	 */
+	public static boolean saveSimpleMap(File f, SimpleWorldFactory swf,
+			SimpleMap map, SimpleCodec codec) {
+		SimpleMapIO s = new SimpleMapIO(f, swf);
+		s.setCodec(codec);
+		s.openMap(false);
+		boolean saved = s.writeMap(map);
+		s.closeMap();
+		return saved;
+	}
+
+	/**
+	 * Set the codec used the next time the file is opened for writing. Files
+	 * are read with the codec they were written with. Builds from before the
+	 * codecs can only decompress {@link SimpleCodec#DEFAULT}, and only read
+	 * the versions they know, see {@link #VERSION}.
+	 * 
+	 * @param codec
+	 *            The codec, {@link SimpleCodec#DEFAULT} if not set.
+	 */
+	public void setCodec(SimpleCodec codec) {
+		this.codec = codec;
+	}
+
 	/**
 	 * Open a map stream.
 	 * 
@@ -119,14 +225,13 @@ public class SimpleMapIO {
 			if (read) {
 				FileInputStream fis = new FileInputStream(f);
 				BufferedInputStream bis = new BufferedInputStream(fis);
-				GZIPInputStream zis = new GZIPInputStream(bis);
-				dI = new DataInputStream(zis);
+				// Maps written straight to a channel are not compressed.
+				dI = new DataInputStream(SimpleCodec.unwrap(bis));
 				canRead = true;
 			} else {
 				FileOutputStream fos = new FileOutputStream(f, false);
 				BufferedOutputStream bos = new BufferedOutputStream(fos);
-				GZIPOutputStream zos = new GZIPOutputStream(bos);
-				dO = new DataOutputStream(zos);
+				dO = new DataOutputStream(codec.wrap(bos));
 				canPrint = true;
 			}
 
@@ -153,7 +258,21 @@ public class SimpleMapIO {
 	 * Objects with an key of -1 will not be saved.
 	 * 
 	 * 
-	 * The format of the saved file will be:
+	 * The map is saved in the format given by {@link #VERSION}.
+	 * 
+	 * @param m
+	 *            The map to be saved.
+	 * @return True if the map was saved successfully.
+	 * @see #writeMap(SimpleMap, int)
+	 */
+	public boolean writeMap(SimpleMap m) {
+		return writeMap(m, VERSION);
+	}
+
+	/**
+	 * Write a map to a file in a specific version of the format.
+	 * 
+	 * The format of a version 1 file will be:
 	 * 
 	 * &lt; int: number of objects &gt;<br>
 	 * &lt; int: map width &gt;<br>
@@ -169,14 +288,63 @@ public class SimpleMapIO {
 	 * &nbsp;&nbsp;&nbsp;&nbsp;&lt; utf_string: s.description &gt; <br>
 	 * done.
 	 * 
+	 * A version 2 file stores each distinct description once, and the objects
+	 * sorted by their y and then x coordinate so that positions are small
+	 * differences. Unsigned variable length ints (varint) use 7 bits per byte,
+	 * with the high bit set on every byte but the last:
+	 * 
+	 * &lt; int: MAGIC &gt;<br>
+	 * &lt; varint: version &gt;<br>
+	 * &lt; varint: map width &gt;<br>
+	 * &lt; varint: map height &gt; <br>
+	 * &lt; varint: map cellWidth &gt; <br>
+	 * &lt; varint: map cellHeight &gt; <br>
+	 * &lt; varint: number of descriptions &gt;<br>
+	 * for (d in descriptions) do <br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;&lt; utf_string: d &gt; <br>
+	 * done.<br>
+	 * &lt; varint: number of objects &gt;<br>
+	 * for (s in map_objects sorted by (y, x)) do <br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: key &gt;<br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: index of s.description &gt;<br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: s.coor_y - previous y &gt;<br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: s.coor_x - previous x if y is
+	 * unchanged, else s.coor_x &gt;<br>
+	 * done.
+	 * 
+	 * Every version is compressed with the codec given to
+	 * {@link #setCodec(SimpleCodec)}, gzip by default, and {@link #readMap()}
+	 * reads any of them.
+	 * 
+	 * The formats of version 3 and version 4 files are described by
+	 * {@link SimpleMapWriter}.
+	 * 
 	 * @param m
 	 *            The map to be saved.
+	 * @param version
+	 *            VERSION_1, VERSION_2, VERSION_3 or VERSION_4.
 	 * @return True if the map was saved successfully.
 	 * @see SimpleObject
 	 * @see SimpleWorldFactory#getKey(SimpleObject)
 	 * @see SimpleMap
 	 */
-	public boolean writeMap(SimpleMap m) {
+	public boolean writeMap(SimpleMap m, int version) {
+		if (version == VERSION_2) {
+			return writeMap2(m);
+		} else if (version == VERSION_3 || version == VERSION_4) {
+			if (!canPrint) {
+				return false;
+			}
+			boolean written = new SimpleMapWriter(swf, version).write(m,
+					Channels.newChannel(dO));
+			try {
+				dO.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false;
+			}
+			return written;
+		}
 		try {
 			if (canPrint) {
 				int count = 0;
@@ -193,8 +361,9 @@ public class SimpleMapIO {
 				dO.writeInt(m.cellHeight);
 
 				for (SimpleObject s = m.getDrawBegin(); s != null; s = s.drawNext) {
-					if(swf.getKey(s)!=-1){
-						dO.writeInt(swf.getKey(s));
+					int key = swf.getKey(s);
+					if (key != -1) {
+						dO.writeInt(key);
 						dO.writeInt(s.coor_x);
 						dO.writeInt(s.coor_y);
 						dO.writeUTF(s.getDescription());
@@ -210,9 +379,130 @@ public class SimpleMapIO {
 		return false;
 	}
 
+	/**
+	 * Write a snapshot of a map to a file in the format given by
+	 * {@link #VERSION_2}. Unlike {@link #writeMap(SimpleMap)}, this method can
+	 * be called from any thread.
+	 * 
+	 * @param c
+	 *            The snapshot to be saved.
+	 * @return True if the map was saved successfully.
+	 * @see SimpleMapSave
+	 */
+	public boolean writeMap(SimpleMapSnapshot c) {
+		return writeMap2(c, null);
+	}
+
+	/**
+	 * Write a snapshot of a map to a file in a specific version of the
+	 * format. Version 1 is not supported.
+	 * 
+	 * @param c
+	 *            The snapshot to be saved.
+	 * @param version
+	 *            VERSION_2, VERSION_3 or VERSION_4.
+	 * @return True if the map was saved successfully.
+	 */
+	public boolean writeMap(SimpleMapSnapshot c, int version) {
+		return writeMap(c, version, null);
+	}
+
+	/*
+	 * Write a snapshot, telling a save how many objects have been written.
+	 */
+	boolean writeMap(SimpleMapSnapshot c, int version, SimpleMapSave progress) {
+		if (version == VERSION_2) {
+			return writeMap2(c, progress);
+		} else if (version != VERSION_3 && version != VERSION_4) {
+			System.out.println("Error: Can't write a snapshot in version "
+					+ version + ".");
+			return false;
+		} else if (!canPrint) {
+			return false;
+		}
+		boolean written = new SimpleMapWriter(swf, version).write(c,
+				Channels.newChannel(dO), progress);
+		try {
+			dO.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		return written;
+	}
+
+	private boolean writeMap2(SimpleMap m) {
+		return writeMap2(SimpleMapSnapshot.capture(m, swf), null);
+	}
+
+	/*
+	 * Write a snapshot in version 2 of the format, telling a save how many
+	 * objects have been written.
+	 */
+	boolean writeMap2(final SimpleMapSnapshot c, SimpleMapSave progress) {
+		try {
+			if (canPrint) {
+				Map<String, Integer> strings = new HashMap<String, Integer>();
+				List<String> table = new ArrayList<String>();
+				Integer[] sorted = new Integer[c.size];
+				for (int n = 0; n < c.size; n++) {
+					sorted[n] = n;
+					String d = c.descriptions[n];
+					if (!strings.containsKey(d)) {
+						strings.put(d, table.size());
+						table.add(d);
+					}
+				}
+				Arrays.sort(sorted, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer a, Integer b) {
+						int ya = c.ys[a], yb = c.ys[b];
+						if (ya != yb) {
+							return ya < yb ? -1 : 1;
+						}
+						int xa = c.xs[a], xb = c.xs[b];
+						return xa < xb ? -1 : (xa == xb ? 0 : 1);
+					}
+				});
+
+				dO.writeInt(MAGIC);
+				writeVarInt(dO, VERSION_2);
+				writeVarInt(dO, c.width);
+				writeVarInt(dO, c.height);
+				writeVarInt(dO, c.cellWidth);
+				writeVarInt(dO, c.cellHeight);
+
+				writeVarInt(dO, table.size());
+				for (String d : table) {
+					dO.writeUTF(d);
+				}
+
+				writeVarInt(dO, sorted.length);
+				int x = 0, y = 0, written = 0;
+				for (int n : sorted) {
+					writeVarInt(dO, c.keys[n]);
+					writeVarInt(dO, strings.get(c.descriptions[n]));
+					writeVarInt(dO, c.ys[n] - y);
+					writeVarInt(dO, c.ys[n] == y ? c.xs[n] - x : c.xs[n]);
+					x = c.xs[n];
+					y = c.ys[n];
+					if (progress != null && (++written & 0xFFF) == 0) {
+						progress.written = written;
+					}
+				}
+
+				dO.flush();
+				return true;
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
 	/**
 	 * Read a mp from a file. Reverses the process defined by
-	 * SimpleMapIO.writeMap.
+	 * SimpleMapIO.writeMap, for every version of the format.
 	 * 
 	 * @return The SimpleMap represented by the file.
 	 * @see SimpleWorldFactory
@@ -221,6 +511,19 @@ public class SimpleMapIO {
 		try {
 			if (canRead) {
 				int count = dI.readInt();
+				if (count == MAGIC) {
+					int version = readVarInt(dI);
+					if (version == VERSION_2) {
+						return readMap2();
+					} else if (version == VERSION_3) {
+						return readMap3(false);
+					} else if (version == VERSION_4) {
+						return readMap3(true);
+					}
+					System.out.println("Error: Unknown map version " + version
+							+ ".");
+					return null;
+				}
 				SimpleMap m = new SimpleMap(dI.readInt(), dI.readInt(),
 						dI.readInt(), dI.readInt());
 				while (count > 0) {
@@ -239,6 +542,104 @@ public class SimpleMapIO {
 		return null;
 	}
 
+	private SimpleMap readMap2() throws IOException {
+		SimpleMap m = new SimpleMap(readVarInt(dI), readVarInt(dI),
+				readVarInt(dI), readVarInt(dI));
+		String[] table = new String[readVarInt(dI)];
+		for (int n = 0; n < table.length; n++) {
+			table[n] = dI.readUTF();
+		}
+
+		int count = readVarInt(dI);
+		int x = 0, y = 0;
+		while (count > 0) {
+			int key = readVarInt(dI);
+			String d = table[readVarInt(dI)];
+			int dy = readVarInt(dI);
+			int dx = readVarInt(dI);
+			x = (dy == 0) ? x + dx : dx;
+			y += dy;
+			swf.addSimpleObject(key, x, y, d, m);
+			count--;
+		}
+		return m;
+	}
+
+	/*
+	 * Read version 3, or version 4 if states is true.
+	 */
+	private SimpleMap readMap3(boolean states) throws IOException {
+		SimpleMap m = new SimpleMap(readVarInt(dI), readVarInt(dI),
+				readVarInt(dI), readVarInt(dI));
+		List<String> table = new ArrayList<String>();
+		SimpleState state = new SimpleState();
+		byte[] buffer = new byte[64];
+		int x = 0, y = 0;
+		for (int count = dI.readInt(); count > 0; count = dI.readInt()) {
+			while (count > 0) {
+				int key = readVarInt(dI);
+				int ref = readVarInt(dI);
+				String d;
+				if (ref == 0) {
+					byte[] bytes = new byte[readVarInt(dI)];
+					dI.readFully(bytes);
+					d = new String(bytes, StandardCharsets.UTF_8);
+					table.add(d);
+				} else {
+					d = table.get(ref - 1);
+				}
+				x += SimpleMapWriter.unzigzag(readVarInt(dI));
+				y += SimpleMapWriter.unzigzag(readVarInt(dI));
+				int length = states ? readVarInt(dI) : 0;
+				if (length == 0) {
+					swf.addSimpleObject(key, x, y, d, m);
+				} else {
+					int version = readVarInt(dI);
+					if (length > buffer.length) {
+						buffer = new byte[Math.max(length, buffer.length * 2)];
+					}
+					dI.readFully(buffer, 0, length);
+					SimpleObject o = swf.createSimpleObject(key, d);
+					if (o != null && m.addSimpleObject(o, x, y)) {
+						state.wrap(buffer, 0, length);
+						try {
+							o.readState(state, version);
+						} catch (RuntimeException e) {
+							System.out.println("Error: Couldn't read the state of "
+									+ o.getClass().getName() + ".");
+							e.printStackTrace();
+						}
+					}
+				}
+				count--;
+			}
+		}
+		return m;
+	}
+
+	/*
+	 * Write an unsigned int in 7 bit groups, lowest first.
+	 */
+	static void writeVarInt(DataOutputStream out, int v) throws IOException {
+		while ((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	static int readVarInt(DataInputStream in) throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			v |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return v;
+			}
+		}
+		throw new IOException("Malformed varint.");
+	}
+
 	/**
 	 * Closes any input or output stream to the file.
 	 */
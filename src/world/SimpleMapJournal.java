@@ -0,0 +1,705 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the edits made to a map as an append-only journal next to a snapshot
+ * written by {@link SimpleMapIO}, so that saving costs as much as the edits
+ * rather than the whole map. Opening the map loads the snapshot and replays
+ * the journal on top of it, and {@link #compact()} folds the journal into a
+ * new snapshot on a background thread while the map is still being edited.
+ * 
+ * The map tells its journal about every object that is added, removed, moved
+ * or cleared. Edits are kept in memory until {@link #sync()}, which writes
+ * one batch holding the objects that changed since the last batch: first the
+ * saved state of every object that changed or left the map, and then the
+ * current state of every object that changed or joined the map. An object
+ * that moves a thousand times between two batches is written once. Objects
+ * are found again by their key, position and description, so objects with a
+ * key of -1 are not saved, as in {@link SimpleMapIO}. A description is only
+ * seen by the journal when the object moves, so call
+ * {@link #changing(SimpleObject)} before changing what
+ * {@link SimpleObject#getDescription()} returns.
+ * 
+ * A map named "world.map" uses the files:
+ * 
+ * world.map: the snapshot.<br>
+ * world.map.journal: the edits made since the snapshot.<br>
+ * world.map.journal.old: the edits being folded into the next snapshot.<br>
+ * world.map.next: the next snapshot, once it has been written.<br>
+ * world.map.next.part: the next snapshot, while it is written.<br>
+ * 
+ * The next snapshot replaces the snapshot only after the old journal has been
+ * deleted, so a crash at any point leaves files that {@link #open()} loads to
+ * the last batch written. {@link #create(SimpleMap)} deletes the journals
+ * before it writes the next snapshot, so a crash while it runs leaves either
+ * the new map or the previous snapshot without its edits. The format of the
+ * journal is:
+ * 
+ * &lt; int: MAGIC &gt;<br>
+ * &lt; int: version &gt;<br>
+ * for (b in batches) do <br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: length of b &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: CRC32 of b &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; byte: 1 if the map was cleared, else 0 &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: number of removed objects &gt; &lt;
+ * records &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: number of added objects &gt; &lt;
+ * records &gt;<br>
+ * done.
+ * 
+ * where a record is a varint key, a varint x and y, and a varint that is 0
+ * for a new description followed by its length and UTF-8 bytes, else 1 + the
+ * index of a previous description in the batch. A batch that is cut short or
+ * does not match its CRC32 ends the journal.
+ * 
+ * @author Brian Nakayama
+ * @see SimpleMapIO
+ */
+public class SimpleMapJournal {
+
+	/**
+	 * The version of the journal format.
+	 */
+	public static final int VERSION = 1;
+
+	static final int MAGIC = 0xF055AA4A;
+
+	private static final int HEADER = 8;
+	private static final int CLEARED = 1;
+
+	/*
+	 * The saved state of an object, by which it is found again.
+	 */
+	private static final class Record {
+		final int key, x, y;
+		final String description;
+
+		Record(int key, int x, int y, String description) {
+			this.key = key;
+			this.x = x;
+			this.y = y;
+			this.description = description;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Record)) {
+				return false;
+			}
+			Record r = (Record) o;
+			return key == r.key && x == r.x && y == r.y
+					&& description.equals(r.description);
+		}
+
+		@Override
+		public int hashCode() {
+			return ((key * 31 + x) * 31 + y) * 31 + description.hashCode();
+		}
+	}
+
+	private final File f, journal, old, next, part;
+	private final SimpleWorldFactory swf;
+
+	private SimpleMap m = null;
+	private FileChannel ch = null;
+	// Objects changed since the last batch, and their state in the journal.
+	// Objects added since the last batch have no state.
+	private final Map<SimpleObject, Record> pending = new IdentityHashMap<SimpleObject, Record>();
+	private boolean cleared = false;
+	private FutureTask<Boolean> compaction = null;
+
+	/**
+	 * Create a journal for the snapshot in a file.
+	 * 
+	 * @param f
+	 *            The snapshot.
+	 * @param swf
+	 *            The factory of the objects of the map.
+	 */
+	public SimpleMapJournal(File f, SimpleWorldFactory swf) {
+		this.f = f;
+		this.journal = new File(f.getPath() + ".journal");
+		this.old = new File(f.getPath() + ".journal.old");
+		this.next = new File(f.getPath() + ".next");
+		this.part = new File(f.getPath() + ".next.part");
+		this.swf = swf;
+	}
+
+	/**
+	 * Save a map as a new snapshot with an empty journal, and start recording
+	 * its edits. Any journal of a previous snapshot is deleted.
+	 * 
+	 * @param m
+	 *            The map to save.
+	 * @return True if the map was saved.
+	 */
+	public boolean create(SimpleMap m) {
+		close();
+		if (!await()) {
+			return false;
+		}
+		try {
+			// Without journals, a next snapshot left by a crash is this map.
+			Files.deleteIfExists(old.toPath());
+			Files.deleteIfExists(journal.toPath());
+			if (!snapshot(m)) {
+				return false;
+			}
+			Files.move(next.toPath(), f.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			ch = start(journal);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		attach(m);
+		return true;
+	}
+
+	/**
+	 * Load the snapshot and replay its journals, and start recording the
+	 * edits of the map. A batch that was cut short by a crash is dropped.
+	 * 
+	 * @return The map, or null if it couldn't be loaded.
+	 */
+	public SimpleMap open() {
+		close();
+		if (!await()) {
+			return null;
+		}
+		try {
+			// A next snapshot is only complete once the old journal is gone.
+			Files.deleteIfExists(part.toPath());
+			if (next.exists()) {
+				if (old.exists()) {
+					Files.delete(next.toPath());
+				} else {
+					Files.move(next.toPath(), f.toPath(),
+							StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+				}
+			}
+			if (!f.exists()) {
+				System.out.println("Error: No map at " + f.getPath() + ".");
+				return null;
+			}
+			SimpleMap m = SimpleMapIO.loadSimpleMap(f, swf);
+			if (m == null) {
+				return null;
+			}
+			Map<Record, List<SimpleObject>> index = new HashMap<Record, List<SimpleObject>>();
+			if (old.exists() && replay(old, m, index) < 0) {
+				return null;
+			}
+			if (journal.exists()) {
+				long end = replay(journal, m, index);
+				if (end < 0) {
+					return null;
+				}
+				ch = FileChannel.open(journal.toPath(),
+						StandardOpenOption.WRITE);
+				ch.truncate(end);
+				ch.position(end);
+			} else {
+				ch = start(journal);
+			}
+			attach(m);
+			return m;
+		} catch (IOException e) {
+			System.out.println("Error: Couldn't open the journal.");
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Append the edits made since the last batch to the journal, and force
+	 * them to the disk.
+	 * 
+	 * @return True if the edits were saved.
+	 */
+	public boolean sync() {
+		if (ch == null) {
+			return false;
+		}
+		if (pending.isEmpty() && !cleared) {
+			return true;
+		}
+		List<Record> removes = new ArrayList<Record>();
+		List<Record> adds = new ArrayList<Record>();
+		for (Map.Entry<SimpleObject, Record> e : pending.entrySet()) {
+			SimpleObject o = e.getKey();
+			Record saved = e.getValue();
+			Record now = (o.m == m && o.drawNext != null) ? record(o) : null;
+			if (saved != null && !saved.equals(now)) {
+				removes.add(saved);
+			}
+			if (now != null && !now.equals(saved)) {
+				adds.add(now);
+			}
+		}
+
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0);
+			out.writeInt(0);
+			out.writeByte(cleared ? CLEARED : 0);
+			Map<String, Integer> strings = new HashMap<String, Integer>();
+			write(out, removes, strings);
+			write(out, adds, strings);
+			out.flush();
+
+			ByteBuffer b = ByteBuffer.wrap(bytes.toByteArray());
+			CRC32 crc = new CRC32();
+			crc.update(b.array(), HEADER, b.limit() - HEADER);
+			b.putInt(0, b.limit() - HEADER);
+			b.putInt(4, (int) crc.getValue());
+			while (b.hasRemaining()) {
+				ch.write(b);
+			}
+			ch.force(false);
+		} catch (IOException e) {
+			System.out.println("Error: Couldn't write to the journal.");
+			e.printStackTrace();
+			return false;
+		}
+		pending.clear();
+		cleared = false;
+		return true;
+	}
+
+	/**
+	 * Fold the journal into a new snapshot on a background thread. The
+	 * edits made so far are synced, and the map keeps recording edits into a
+	 * new journal while the snapshot is written. If a compaction is already
+	 * running, it is returned instead.
+	 * 
+	 * @return A future that is true once the new snapshot replaces the old.
+	 */
+	public Future<Boolean> compact() {
+		if (compaction != null && !compaction.isDone()) {
+			return compaction;
+		}
+		if (!sync()) {
+			return failed();
+		}
+		// An old journal left by a failed compaction is folded first, and
+		// this journal waits for the next compaction.
+		if (!old.exists()) {
+			// Some systems can't move a file that is open.
+			try {
+				ch.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			ch = null;
+			try {
+				Files.move(journal.toPath(), old.toPath(),
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				System.out.println("Error: Couldn't rotate the journal.");
+				e.printStackTrace();
+				try {
+					ch = FileChannel.open(journal.toPath(),
+							StandardOpenOption.WRITE);
+					ch.position(ch.size());
+				} catch (IOException e2) {
+					System.out.println("Error: Couldn't reopen the journal.");
+					e2.printStackTrace();
+				}
+				return failed();
+			}
+			try {
+				ch = start(journal);
+			} catch (IOException e) {
+				System.out.println("Error: Couldn't start a new journal.");
+				e.printStackTrace();
+				return failed();
+			}
+		}
+
+		compaction = new FutureTask<Boolean>(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return fold();
+			}
+		});
+		Thread t = new Thread(compaction, "SimpleMapJournal " + f.getName());
+		t.setDaemon(true);
+		t.setPriority(Thread.MIN_PRIORITY);
+		t.start();
+		return compaction;
+	}
+
+	/**
+	 * Tell the journal that the description of an object is about to change.
+	 * Moves, additions and removals are recorded by the map itself.
+	 * 
+	 * @param o
+	 *            An object of the map.
+	 */
+	public void changing(SimpleObject o) {
+		if (!pending.containsKey(o)) {
+			pending.put(o, record(o));
+		}
+	}
+
+	/**
+	 * Get the size of the journal, for example to compact it once it grows
+	 * larger than the snapshot.
+	 * 
+	 * @return The size of the journal in bytes.
+	 */
+	public long getJournalSize() {
+		return journal.length() + old.length();
+	}
+
+	/**
+	 * Get the map recorded by this journal.
+	 * 
+	 * @return The map, or null if the journal is closed.
+	 */
+	public SimpleMap getMap() {
+		return m;
+	}
+
+	/**
+	 * Sync the journal, stop recording the map, and close the journal. A
+	 * running compaction is left to finish.
+	 */
+	public void close() {
+		if (ch != null) {
+			sync();
+			try {
+				ch.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			ch = null;
+		}
+		if (m != null && m.journal == this) {
+			m.journal = null;
+		}
+		m = null;
+		pending.clear();
+		cleared = false;
+	}
+
+	private Future<Boolean> failed() {
+		compaction = new FutureTask<Boolean>(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return false;
+			}
+		});
+		compaction.run();
+		return compaction;
+	}
+
+	void added(SimpleObject o) {
+		if (!pending.containsKey(o)) {
+			pending.put(o, null);
+		}
+	}
+
+	void removed(SimpleObject o) {
+		changing(o);
+	}
+
+	void cleared() {
+		pending.clear();
+		cleared = true;
+	}
+
+	private void attach(SimpleMap m) {
+		if (m.journal != null) {
+			m.journal.close();
+		}
+		this.m = m;
+		m.journal = this;
+	}
+
+	/*
+	 * Wait for a running compaction, since the files can't change under it.
+	 */
+	private boolean await() {
+		if (compaction != null) {
+			try {
+				compaction.get();
+			} catch (Exception e) {
+				e.printStackTrace();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Record record(SimpleObject o) {
+		int key = swf.getKey(o);
+		if (key == -1) {
+			return null;
+		}
+		String d = o.getDescription();
+		return new Record(key, o.coor_x, o.coor_y, d == null ? "" : d);
+	}
+
+	private boolean fold() {
+		SimpleMap m = SimpleMapIO.loadSimpleMap(f, swf);
+		if (m == null) {
+			return false;
+		}
+		if (replay(old, m, new HashMap<Record, List<SimpleObject>>()) < 0
+				|| !snapshot(m)) {
+			return false;
+		}
+		try {
+			Files.delete(old.toPath());
+			Files.move(next.toPath(), f.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.out.println("Error: Couldn't replace the snapshot.");
+			e.printStackTrace();
+			return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Write a map to the next snapshot, with the state of its objects, and
+	 * force it to the disk. The snapshot is written to the part file and
+	 * only then moved to the next file, so the next file is always complete.
+	 * Snapshots favor speed over size.
+	 */
+	private boolean snapshot(SimpleMap m) {
+		SimpleMapIO io = new SimpleMapIO(part, swf);
+		io.setCodec(SimpleCodec.FAST);
+		if (!io.openMap(false)) {
+			return false;
+		}
+		boolean saved = io.writeMap(m, SimpleMapIO.VERSION_4);
+		io.closeMap();
+		if (!saved) {
+			return false;
+		}
+		try {
+			FileChannel c = FileChannel.open(part.toPath(),
+					StandardOpenOption.WRITE);
+			c.force(true);
+			c.close();
+			Files.move(part.toPath(), next.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		return true;
+	}
+
+	private static FileChannel start(File j) throws IOException {
+		FileChannel c = FileChannel.open(j.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer b = ByteBuffer.allocate(HEADER);
+		b.putInt(MAGIC).putInt(VERSION).flip();
+		while (b.hasRemaining()) {
+			c.write(b);
+		}
+		c.force(true);
+		return c;
+	}
+
+	private static void write(DataOutputStream out, List<Record> records,
+			Map<String, Integer> strings) throws IOException {
+		SimpleMapIO.writeVarInt(out, records.size());
+		for (Record r : records) {
+			SimpleMapIO.writeVarInt(out, r.key);
+			SimpleMapIO.writeVarInt(out, r.x);
+			SimpleMapIO.writeVarInt(out, r.y);
+			Integer ref = strings.get(r.description);
+			if (ref == null) {
+				strings.put(r.description, strings.size());
+				byte[] d = r.description.getBytes(StandardCharsets.UTF_8);
+				SimpleMapIO.writeVarInt(out, 0);
+				SimpleMapIO.writeVarInt(out, d.length);
+				out.write(d);
+			} else {
+				SimpleMapIO.writeVarInt(out, ref + 1);
+			}
+		}
+	}
+
+	private static List<Record> read(ByteBuffer b, List<String> strings)
+			throws IOException {
+		int count = SimpleChunkedMapIO.readVarInt(b);
+		List<Record> records = new ArrayList<Record>();
+		while (count > 0) {
+			int key = SimpleChunkedMapIO.readVarInt(b);
+			int x = SimpleChunkedMapIO.readVarInt(b);
+			int y = SimpleChunkedMapIO.readVarInt(b);
+			int ref = SimpleChunkedMapIO.readVarInt(b);
+			String d;
+			if (ref == 0) {
+				byte[] bytes = new byte[SimpleChunkedMapIO.readVarInt(b)];
+				b.get(bytes);
+				d = new String(bytes, StandardCharsets.UTF_8);
+				strings.add(d);
+			} else {
+				d = strings.get(ref - 1);
+			}
+			records.add(new Record(key, x, y, d));
+			count--;
+		}
+		return records;
+	}
+
+	/*
+	 * Apply the batches of a journal to a map, and return the end of the last
+	 * whole batch, or -1 if the file isn't a journal.
+	 */
+	private long replay(File j, SimpleMap m,
+			Map<Record, List<SimpleObject>> index) {
+		ByteBuffer b;
+		try {
+			b = ByteBuffer.wrap(Files.readAllBytes(j.toPath()));
+		} catch (IOException e) {
+			System.out.println("Error: Couldn't read the journal.");
+			e.printStackTrace();
+			return -1;
+		}
+		if (b.remaining() < HEADER || b.getInt() != MAGIC) {
+			System.out.println("Error: " + j.getPath() + " is not a journal.");
+			return -1;
+		}
+		int version = b.getInt();
+		if (version != VERSION) {
+			System.out.println("Error: Unknown journal version " + version
+					+ ".");
+			return -1;
+		}
+
+		CRC32 crc = new CRC32();
+		while (b.remaining() >= HEADER) {
+			int start = b.position();
+			int length = b.getInt();
+			int sum = b.getInt();
+			if (length < 1 || length > b.remaining()) {
+				return start;
+			}
+			crc.reset();
+			crc.update(b.array(), b.position(), length);
+			if ((int) crc.getValue() != sum) {
+				return start;
+			}
+			ByteBuffer batch = ByteBuffer.wrap(b.array(), b.position(), length)
+					.slice();
+			b.position(b.position() + length);
+
+			List<Record> removes, adds;
+			boolean clear;
+			try {
+				clear = (batch.get() & CLEARED) != 0;
+				List<String> strings = new ArrayList<String>();
+				removes = read(batch, strings);
+				adds = read(batch, strings);
+			} catch (IOException e) {
+				return start;
+			} catch (BufferUnderflowException e) {
+				return start;
+			}
+			apply(m, index, clear, removes, adds);
+		}
+		return b.position();
+	}
+
+	/*
+	 * Removals come first, so that solids never collide with the places they
+	 * have left.
+	 */
+	private void apply(SimpleMap m, Map<Record, List<SimpleObject>> index,
+			boolean clear, List<Record> removes, List<Record> adds) {
+		if (clear) {
+			m.clearAll();
+			index.clear();
+		}
+		if (!removes.isEmpty() && index.isEmpty()) {
+			for (SimpleObject s = m.getDrawBegin(); s != null; s = s.drawNext) {
+				Record r = record(s);
+				if (r != null) {
+					put(index, r, s);
+				}
+			}
+		}
+		for (Record r : removes) {
+			List<SimpleObject> l = index.get(r);
+			if (l != null) {
+				l.remove(l.size() - 1).removeSelf();
+				if (l.isEmpty()) {
+					index.remove(r);
+				}
+			}
+		}
+		for (Record r : adds) {
+			SimpleObject o = swf.createSimpleObject(r.key, r.description);
+			if (o != null && m.addSimpleObject(o, r.x, r.y)) {
+				if (!index.isEmpty()) {
+					put(index, r, o);
+				}
+			}
+		}
+	}
+
+	private static void put(Map<Record, List<SimpleObject>> index, Record r,
+			SimpleObject o) {
+		List<SimpleObject> l = index.get(r);
+		if (l == null) {
+			l = new ArrayList<SimpleObject>(1);
+			index.put(r, l);
+		}
+		l.add(o);
+	}
+}
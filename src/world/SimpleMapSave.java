@@ -0,0 +1,204 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Saves a map on a background thread, so that the game keeps its frame rate
+ * while the map is written and compressed. The save copies the map into a
+ * {@link SimpleMapSnapshot} when it is started, which must happen on the
+ * thread updating the map, and {@link SimpleWorld#save(File,
+ * SimpleWorldFactory)} starts it between two frames. The map is written in
+ * the format given by {@link SimpleMapIO#VERSION_4}, with the state of each
+ * object, to a temporary file that replaces the file once it is complete, so
+ * a save that fails leaves the previous save intact. Saves are compressed
+ * with {@link SimpleCodec#FAST} unless another codec is given.
+ * 
+ * <pre>
+ * <code>
+ * SimpleMapSave save = world.save(file, factory);
+ * ... Later ...
+ * if (save.isDone()) {
+ * 		boolean saved = save.get();
+ * } else {
+ * 		drawProgressBar(save.getProgress());
+ * }
+ * </code>
+ * </pre>
+ * 
+ * @author Brian Nakayama
+ * @see SimpleMapIO
+ */
+public class SimpleMapSave implements Future<Boolean> {
+
+	private final File f;
+	private final SimpleWorldFactory swf;
+	private final SimpleCodec codec;
+	private final FutureTask<Boolean> task;
+	private volatile SimpleMapSnapshot snapshot = null;
+	// The number of objects written, updated by SimpleMapIO.
+	volatile int written = 0;
+
+	/**
+	 * Create a save of a map to a file. The save does nothing until it is
+	 * started.
+	 * 
+	 * @param f
+	 *            The file to save to.
+	 * @param swf
+	 *            The factory of the objects of the map.
+	 */
+	public SimpleMapSave(File f, SimpleWorldFactory swf) {
+		this(f, swf, SimpleCodec.FAST);
+	}
+
+	/**
+	 * Create a save of a map to a file compressed with a codec. The save does
+	 * nothing until it is started.
+	 * 
+	 * @param f
+	 *            The file to save to.
+	 * @param swf
+	 *            The factory of the objects of the map.
+	 * @param codec
+	 *            The codec to compress the file with.
+	 */
+	public SimpleMapSave(File f, SimpleWorldFactory swf, SimpleCodec codec) {
+		this.f = f;
+		this.swf = swf;
+		this.codec = codec;
+		this.task = new FutureTask<Boolean>(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return write();
+			}
+		});
+	}
+
+	/**
+	 * Copy a map and start writing it on a background thread. Call this from
+	 * the thread updating the map, between frames.
+	 * 
+	 * @param m
+	 *            The map to save.
+	 */
+	public void start(SimpleMap m) {
+		if (snapshot != null || task.isDone()) {
+			return;
+		}
+		snapshot = SimpleMapSnapshot.capture(m, swf);
+		Thread t = new Thread(task, "SimpleMapSave " + f.getName());
+		t.setPriority(Thread.MIN_PRIORITY);
+		t.start();
+	}
+
+	/**
+	 * Get how much of the map has been written.
+	 * 
+	 * @return A number from 0 (not started) to 1 (done).
+	 */
+	public float getProgress() {
+		SimpleMapSnapshot c = snapshot;
+		if (task.isDone()) {
+			return 1;
+		} else if (c == null || c.size == 0) {
+			return 0;
+		}
+		return written / (float) c.size;
+	}
+
+	private boolean write() {
+		// Each save has its own temporary file, since two saves of the same
+		// file may run at once.
+		File tmp;
+		try {
+			tmp = File.createTempFile(f.getName(), ".save", f
+					.getAbsoluteFile().getParentFile());
+		} catch (IOException e) {
+			System.out.println("Error: Couldn't create a temporary file for "
+					+ f.getPath() + ".");
+			e.printStackTrace();
+			return false;
+		}
+		SimpleMapIO io = new SimpleMapIO(tmp, swf);
+		io.setCodec(codec);
+		if (!io.openMap(false)) {
+			tmp.delete();
+			return false;
+		}
+		boolean saved = io.writeMap(snapshot, SimpleMapIO.VERSION_4, this);
+		io.closeMap();
+		if (saved) {
+			try {
+				Files.move(tmp.toPath(), f.toPath(),
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				System.out.println("Error: Couldn't replace " + f.getPath()
+						+ ".");
+				e.printStackTrace();
+				tmp.delete();
+				return false;
+			}
+		} else {
+			tmp.delete();
+		}
+		return saved;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return task.cancel(mayInterruptIfRunning);
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return task.isCancelled();
+	}
+
+	@Override
+	public boolean isDone() {
+		return task.isDone();
+	}
+
+	@Override
+	public Boolean get() throws InterruptedException, ExecutionException {
+		return task.get();
+	}
+
+	@Override
+	public Boolean get(long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		return task.get(timeout, unit);
+	}
+}
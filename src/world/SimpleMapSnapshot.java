@@ -0,0 +1,128 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.util.Arrays;
+
+/**
+ * A copy of the objects of a map that can be saved on another thread. Only
+ * the key, position, description and {@link SimpleObject#writeState(SimpleState)
+ * state} of each object is copied, so capturing a snapshot between two frames
+ * is a single walk of the draw list, and the objects are free to keep moving
+ * while the snapshot is written. The states of all the objects are packed into
+ * one array.
+ * 
+ * @author Brian Nakayama
+ * @see SimpleMapSave
+ * @see SimpleMapIO#writeMap(SimpleMapSnapshot)
+ */
+public class SimpleMapSnapshot {
+
+	private static final int CAPACITY = 1024;
+
+	final int width, height, cellWidth, cellHeight;
+	final int[] keys, xs, ys;
+	final String[] descriptions;
+	// The state of object n is states[offsets[n]] up to states[offsets[n + 1]].
+	final int[] versions, offsets;
+	final byte[] states;
+	final int size;
+
+	private SimpleMapSnapshot(SimpleMap m, int[] keys, int[] xs, int[] ys,
+			String[] descriptions, int[] versions, int[] offsets,
+			byte[] states, int size) {
+		this.width = m.map[0].length;
+		this.height = m.map.length;
+		this.cellWidth = m.cellWidth;
+		this.cellHeight = m.cellHeight;
+		this.keys = keys;
+		this.xs = xs;
+		this.ys = ys;
+		this.descriptions = descriptions;
+		this.versions = versions;
+		this.offsets = offsets;
+		this.states = states;
+		this.size = size;
+	}
+
+	/**
+	 * Copy the objects of a map. Call this from the thread updating the map,
+	 * between frames, for example with {@link SimpleWorld#save(java.io.File,
+	 * SimpleWorldFactory)}. Objects with a key of -1 are not copied.
+	 * 
+	 * @param m
+	 *            The map to copy.
+	 * @param swf
+	 *            The factory that gives the keys of the objects.
+	 * @return The snapshot.
+	 */
+	public static SimpleMapSnapshot capture(SimpleMap m, SimpleWorldFactory swf) {
+		int[] keys = new int[CAPACITY];
+		int[] xs = new int[CAPACITY];
+		int[] ys = new int[CAPACITY];
+		String[] descriptions = new String[CAPACITY];
+		int[] versions = new int[CAPACITY];
+		int[] offsets = new int[CAPACITY + 1];
+		byte[] states = new byte[CAPACITY];
+		SimpleState state = new SimpleState();
+		int n = 0;
+		for (SimpleObject s = m.getDrawBegin(); s != null; s = s.drawNext) {
+			int key = swf.getKey(s);
+			if (key != -1) {
+				if (n == keys.length) {
+					keys = Arrays.copyOf(keys, n * 2);
+					xs = Arrays.copyOf(xs, n * 2);
+					ys = Arrays.copyOf(ys, n * 2);
+					descriptions = Arrays.copyOf(descriptions, n * 2);
+					versions = Arrays.copyOf(versions, n * 2);
+					offsets = Arrays.copyOf(offsets, n * 2 + 1);
+				}
+				keys[n] = key;
+				xs[n] = s.coor_x;
+				ys[n] = s.coor_y;
+				descriptions[n] = s.getDescription();
+				state.clear();
+				versions[n] = s.writeState(state);
+				int offset = offsets[n];
+				if (offset + state.limit > states.length) {
+					states = Arrays.copyOf(states,
+							Math.max(states.length * 2, offset + state.limit));
+				}
+				System.arraycopy(state.data, 0, states, offset, state.limit);
+				n++;
+				offsets[n] = offset + state.limit;
+			}
+		}
+		return new SimpleMapSnapshot(m, keys, xs, ys, descriptions, versions,
+				offsets, states, n);
+	}
+
+	/**
+	 * Get the number of objects in the snapshot.
+	 * 
+	 * @return The number of objects.
+	 */
+	public int size() {
+		return size;
+	}
+}
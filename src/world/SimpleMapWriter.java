@@ -0,0 +1,342 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes a map in version 3 or 4 of the {@link SimpleMapIO} format, walking
+ * the draw list once. Objects are written into direct buffers taken from a
+ * shared pool, and each full buffer is written to a channel as a frame that
+ * begins with its number of objects, so the total count never has to be known
+ * in advance. A frame with no objects ends the map.
+ * 
+ * The format of a version 3 file is:
+ * 
+ * &lt; int: MAGIC &gt;<br>
+ * &lt; varint: version &gt;<br>
+ * &lt; varint: map width &gt;<br>
+ * &lt; varint: map height &gt; <br>
+ * &lt; varint: map cellWidth &gt; <br>
+ * &lt; varint: map cellHeight &gt; <br>
+ * for (f in frames) do <br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: number of objects in f &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;for (s in f) do <br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: key &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: 0 for a new
+ * description, else 1 + the index of a previous one &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&lt; varint: length &gt;
+ * &lt; bytes: s.description in UTF-8 &gt; (new descriptions only)<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&lt; zigzag varint: s.coor_x
+ * - previous x &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&lt; zigzag varint: s.coor_y
+ * - previous y &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;done.<br>
+ * done.<br>
+ * &lt; int: 0 &gt;
+ * 
+ * A version 4 file adds the state written by
+ * {@link SimpleObject#writeState(SimpleState)} to the end of each object:
+ * 
+ * &lt; varint: length of the state &gt;<br>
+ * &lt; varint: version of the state &gt; &lt; bytes: the state &gt; (only if
+ * the length is not 0)<br>
+ * 
+ * @author Brian Nakayama
+ * @see SimpleMapIO#writeMap(SimpleMap, int)
+ */
+public class SimpleMapWriter {
+
+	/**
+	 * The size of the pooled buffers, and so the largest frame.
+	 */
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	private static final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+
+	// The most bytes a record can take besides its description and state,
+	// plus room for the int that ends the map.
+	private static final int RECORD = 39;
+
+	private final SimpleWorldFactory swf;
+	private final int version;
+	private final SimpleState state = new SimpleState();
+
+	// The channel and frame being written.
+	private WritableByteChannel ch;
+	private ByteBuffer b;
+	private Map<String, Integer> strings;
+	private int frame, count, x, y;
+
+	/**
+	 * Create a writer for maps made of the objects of a factory, in version 3
+	 * of the format.
+	 * 
+	 * @param swf
+	 *            The factory that gives the keys of the objects.
+	 */
+	public SimpleMapWriter(SimpleWorldFactory swf) {
+		this(swf, SimpleMapIO.VERSION_3);
+	}
+
+	/**
+	 * Create a writer for maps made of the objects of a factory.
+	 * 
+	 * @param swf
+	 *            The factory that gives the keys of the objects.
+	 * @param version
+	 *            SimpleMapIO.VERSION_3, or SimpleMapIO.VERSION_4 to write the
+	 *            state of each object.
+	 */
+	public SimpleMapWriter(SimpleWorldFactory swf, int version) {
+		this.swf = swf;
+		this.version = version;
+	}
+
+	/**
+	 * Write a map to a channel. The channel is not closed.
+	 * 
+	 * @param m
+	 *            The map to write.
+	 * @param ch
+	 *            The channel, for example a FileChannel.
+	 * @return True if the map was written successfully.
+	 */
+	public boolean write(SimpleMap m, WritableByteChannel ch) {
+		try {
+			begin(ch, m.map[0].length, m.map.length, m.cellWidth, m.cellHeight);
+			final boolean states = version == SimpleMapIO.VERSION_4;
+			int v = 0;
+			for (SimpleObject s = m.getDrawBegin(); s != null; s = s.drawNext) {
+				int key = swf.getKey(s);
+				if (key == -1) {
+					continue;
+				}
+				state.clear();
+				if (states) {
+					v = s.writeState(state);
+				}
+				put(key, s.coor_x, s.coor_y, s.getDescription(), v, state.data,
+						0, state.limit);
+			}
+			end();
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			done();
+		}
+		return false;
+	}
+
+	/**
+	 * Write a snapshot of a map to a channel. The channel is not closed.
+	 * Unlike {@link #write(SimpleMap, WritableByteChannel)}, this method can
+	 * be called from any thread.
+	 * 
+	 * @param c
+	 *            The snapshot to write.
+	 * @param ch
+	 *            The channel.
+	 * @return True if the map was written successfully.
+	 */
+	public boolean write(SimpleMapSnapshot c, WritableByteChannel ch) {
+		return write(c, ch, null);
+	}
+
+	/*
+	 * Write a snapshot, telling a save how many objects have been written.
+	 */
+	boolean write(SimpleMapSnapshot c, WritableByteChannel ch,
+			SimpleMapSave progress) {
+		try {
+			begin(ch, c.width, c.height, c.cellWidth, c.cellHeight);
+			final boolean states = version == SimpleMapIO.VERSION_4;
+			for (int n = 0; n < c.size; n++) {
+				int offset = c.offsets[n];
+				put(c.keys[n], c.xs[n], c.ys[n], c.descriptions[n],
+						c.versions[n], c.states, offset,
+						states ? c.offsets[n + 1] - offset : 0);
+				if (progress != null && (n & 0xFFF) == 0xFFF) {
+					progress.written = n + 1;
+				}
+			}
+			end();
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			done();
+		}
+		return false;
+	}
+
+	private void begin(WritableByteChannel ch, int width, int height,
+			int cellWidth, int cellHeight) {
+		this.ch = ch;
+		b = acquire();
+		strings = new HashMap<String, Integer>();
+		b.putInt(SimpleMapIO.MAGIC);
+		putVarInt(b, version);
+		putVarInt(b, width);
+		putVarInt(b, height);
+		putVarInt(b, cellWidth);
+		putVarInt(b, cellHeight);
+		frame = b.position();
+		count = 0;
+		b.putInt(0);
+		x = 0;
+		y = 0;
+	}
+
+	private void put(int key, int cx, int cy, String d, int v, byte[] state,
+			int offset, int length) throws IOException {
+		Integer ref = strings.get(d);
+		byte[] bytes = null;
+		if (ref == null) {
+			bytes = d.getBytes(StandardCharsets.UTF_8);
+			strings.put(d, strings.size());
+		}
+
+		int need = RECORD + (bytes == null ? 0 : bytes.length) + length;
+		if (b.remaining() < need) {
+			if (count == 0) {
+				// An empty frame would end the map, so grow this one instead.
+				b = grow(b, need);
+			} else {
+				// Finish this frame and begin another.
+				b.putInt(frame, count);
+				b = flush(b, ch, need + 4);
+				frame = 0;
+				count = 0;
+				b.putInt(0);
+			}
+		}
+
+		putVarInt(b, key);
+		if (ref == null) {
+			putVarInt(b, 0);
+			putVarInt(b, bytes.length);
+			b.put(bytes);
+		} else {
+			putVarInt(b, ref + 1);
+		}
+		putVarInt(b, zigzag(cx - x));
+		putVarInt(b, zigzag(cy - y));
+		if (version == SimpleMapIO.VERSION_4) {
+			putVarInt(b, length);
+			if (length > 0) {
+				putVarInt(b, v);
+				b.put(state, offset, length);
+			}
+		}
+		x = cx;
+		y = cy;
+		count++;
+	}
+
+	private void end() throws IOException {
+		b.putInt(frame, count);
+		if (count > 0) {
+			b.putInt(0);
+		}
+		b = flush(b, ch, 0);
+	}
+
+	private void done() {
+		if (b != null) {
+			release(b);
+		}
+		b = null;
+		ch = null;
+		strings = null;
+	}
+
+	/*
+	 * Write out a buffer and return an empty buffer with room for at least
+	 * the given number of bytes.
+	 */
+	private static ByteBuffer flush(ByteBuffer b, WritableByteChannel ch,
+			int room) throws IOException {
+		b.flip();
+		while (b.hasRemaining()) {
+			ch.write(b);
+		}
+		b.clear();
+		if (room > b.capacity()) {
+			// A description too large for a pooled buffer.
+			release(b);
+			return ByteBuffer.allocate(room);
+		}
+		return b;
+	}
+
+	/*
+	 * Copy what has been written to a buffer with room for a record too large
+	 * for a pooled buffer.
+	 */
+	private static ByteBuffer grow(ByteBuffer b, int room) {
+		b.flip();
+		ByteBuffer g = ByteBuffer.allocate(b.remaining() + room);
+		g.put(b);
+		release(b);
+		return g;
+	}
+
+	private static ByteBuffer acquire() {
+		ByteBuffer b = buffers.poll();
+		if (b == null) {
+			b = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+		return b;
+	}
+
+	private static void release(ByteBuffer b) {
+		if (b.isDirect() && b.capacity() == BUFFER_SIZE) {
+			b.clear();
+			buffers.add(b);
+		}
+	}
+
+	static int zigzag(int v) {
+		return (v << 1) ^ (v >> 31);
+	}
+
+	static int unzigzag(int v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	static void putVarInt(ByteBuffer b, int v) {
+		while ((v & ~0x7F) != 0) {
+			b.put((byte) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		b.put((byte) v);
+	}
+}
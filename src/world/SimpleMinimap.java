@@ -0,0 +1,169 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import sprite.Img;
+import sprite.ImgCanvas;
+
+/**
+ * An image of the collision grid of a SimpleMap with one pixel per cell,
+ * colored by the id of the solid in the cell. The map tells the minimap about
+ * every cell that a solid enters or leaves, so the image is kept up to date
+ * without scanning the grid again, and drawing it is a single image.
+ * 
+ * Ids without a color of their own are given a color derived from the id.
+ * 
+ * @author Brian Nakayama
+ */
+public class SimpleMinimap {
+
+	private final SimpleMap m;
+	private final int width, height;
+	private final int[] pixels;
+	private final Img img;
+	private final Map<Integer, Integer> colors = new HashMap<Integer, Integer>();
+	private int empty = 0;
+
+	/**
+	 * Create a minimap of a map and attach it to the map. A map has at most
+	 * one minimap, so this replaces any minimap the map already had.
+	 * 
+	 * @param m
+	 *            The map to follow.
+	 * @param dc
+	 *            The canvas the minimap will be drawn on.
+	 */
+	public SimpleMinimap(SimpleMap m, ImgCanvas dc) {
+		this.m = m;
+		this.height = m.map.length;
+		this.width = m.map[0].length;
+		this.pixels = new int[width * height];
+		this.img = dc.createPixelImg(pixels, width, height);
+		refresh();
+		m.minimap = this;
+	}
+
+	/**
+	 * Set the color of the cells holding solids with an id.
+	 * 
+	 * @param id
+	 *            The id of the solids.
+	 * @param argb
+	 *            The color, with alpha in the highest byte.
+	 */
+	public void setColor(int id, int argb) {
+		colors.put(id, argb);
+		refresh();
+	}
+
+	/**
+	 * Set the color of the cells without a solid. By default they are
+	 * transparent.
+	 * 
+	 * @param argb
+	 *            The color, with alpha in the highest byte.
+	 */
+	public void setEmptyColor(int argb) {
+		empty = argb;
+		refresh();
+	}
+
+	/**
+	 * Get the color of a cell.
+	 * 
+	 * @param x
+	 *            The x cell of the map.
+	 * @param y
+	 *            The y cell of the map.
+	 * @return The color, with alpha in the highest byte.
+	 */
+	public int getColor(int x, int y) {
+		return pixels[y * width + x];
+	}
+
+	/**
+	 * Draw the minimap with its top left corner at (x, y) of the canvas.
+	 * 
+	 * @param x
+	 *            The x position on the canvas.
+	 * @param y
+	 *            The y position on the canvas.
+	 * @param dc
+	 *            The canvas to be drawn on.
+	 */
+	public void draw(int x, int y, ImgCanvas dc) {
+		if (img != null) {
+			img.drawSlide(x, y, dc);
+		}
+	}
+
+	/**
+	 * Get the image of the minimap, which changes along with the map.
+	 * 
+	 * @return The image, or null if the canvas has no pixel images.
+	 */
+	public Img getImg() {
+		return img;
+	}
+
+	/**
+	 * Stop following the map.
+	 */
+	public void detach() {
+		if (m.minimap == this) {
+			m.minimap = null;
+		}
+	}
+
+	/*
+	 * Color every cell. Only needed when the colors change.
+	 */
+	private void refresh() {
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				changed(x, y);
+			}
+		}
+	}
+
+	/*
+	 * Called by the map and solids when the solid in a cell changes.
+	 */
+	void changed(int x, int y) {
+		SimpleSolid s = m.map[y][x];
+		pixels[y * width + x] = (s == null) ? empty : color(s.id());
+	}
+
+	private int color(int id) {
+		Integer c = colors.get(id);
+		if (c == null) {
+			// Spread the bits of the id across the color channels.
+			c = 0xFF000000 | ((id * 0x9E3779B1) >>> 8);
+			colors.put(id, c);
+		}
+		return c;
+	}
+}
@@ -70,6 +70,15 @@ public abstract class SimpleObject {
 
 	final SimpleSolid[] collisions = new SimpleSolid[4];
 
+	// The pool this object returns to when removed, if any.
+	SimpleObjectPool pool = null;
+
+	// The z-index of the object, and whether it is drawn as part of a chunk
+	// baked by the map's StaticLayerCache.
+	int z;
+	boolean baked = false;
+	StaticLayerCache.Chunk chunk = null;
+
 	/**
 	 * Method for generating unique ID's. The ID's will be unique up to 2^32
 	 * objects.
@@ -139,6 +148,64 @@ public abstract class SimpleObject {
 		return "";
 	}
 
+	/**
+	 * Override this method to save the state of the object that changes during
+	 * the game, such as its velocity or health, along with its description.
+	 * The state is written by save games in {@link SimpleMapIO#VERSION_4} and
+	 * by {@link SimpleMapSave}, and restored by
+	 * {@link #readState(SimpleState, int)} once the object has been created
+	 * from its description and added to the map.
+	 * 
+	 * <pre>
+	 * <code>
+	 * 	public int writeState(SimpleState out) {
+	 * 		out.writeFloat(vx);
+	 * 		out.writeFloat(vy);
+	 * 		out.writeVarInt(health);
+	 * 		return 1;
+	 * 	}
+	 * </code>
+	 * </pre>
+	 * 
+	 * @param out
+	 *            The buffer to write the state to.
+	 * @return The version of the state written, passed back to readState so
+	 *         that older saves can still be read after the state changes.
+	 */
+	public int writeState(SimpleState out) {
+		return 0;
+	}
+
+	/**
+	 * Override this method to restore the state written by
+	 * {@link #writeState(SimpleState)}. It is only called for objects that
+	 * wrote some state.
+	 * 
+	 * @param in
+	 *            The buffer to read the state from.
+	 * @param version
+	 *            The version returned by writeState when the state was saved.
+	 */
+	public void readState(SimpleState in, int version) {
+	}
+
+	/**
+	 * Override this method to allow the object to be reused by a
+	 * {@link SimpleObjectPool}. The method is called by SimpleWorldFactory on
+	 * a removed object before it is added to a map again, and should restore
+	 * the state that a new object customized by the String s would have.
+	 * 
+	 * @param s
+	 *            A string containing information as to how to customize the
+	 *            object.
+	 * @return True iff the object was reset and can be reused. By default
+	 *         objects are never reused.
+	 * @see SimpleWorldFactory#setPoolCapacity(int, int)
+	 */
+	public boolean recycle(String s) {
+		return false;
+	}
+
 	/**
 	 * Default constructor. Checks for collisions and passes updates.
 	 */
@@ -269,8 +336,10 @@ public abstract class SimpleObject {
 	 */
 	public boolean cancelMove() {
 		if (coor_x != pre_cx || coor_y != pre_cy) {
+			journalChanging();
 			coor_x = pre_cx;
 			coor_y = pre_cy;
+			staticChanged();
 			return true;
 		} else {
 			return false;
@@ -299,6 +368,7 @@ public abstract class SimpleObject {
 			x += coor_x;
 			y += coor_y;
 		}
+		journalChanging();
 		pre_cy = coor_y;
 		pre_cx = coor_x;
 
@@ -323,30 +393,63 @@ public abstract class SimpleObject {
 		} else {
 			coor_y = 0;
 		}
+		staticChanged();
 		return movement;
 	}
 
+	/*
+	 * Tell the map's StaticLayerCache that the position or image of a static
+	 * object has changed, so that its chunk is baked again.
+	 */
+	final void staticChanged() {
+		if (updates == NO_UPDATES_NO_COLLIDES && m != null && m.statics != null) {
+			m.statics.changed(this);
+		}
+	}
+
+	/*
+	 * Tell the map's journal that the object is about to move, so that the
+	 * state it was last saved in is kept.
+	 */
+	final void journalChanging() {
+		if (m != null && m.journal != null) {
+			m.journal.changing(this);
+		}
+	}
+
 	/*
 	 * Used by SimpleWorld to ask for updates. This method first checks whether
 	 * the object is optimized before checking for collisions, and then
-	 * updating.
+	 * updating. If a profiler is given, it times the collision and update
+	 * methods.
 	 */
-	void newUpdate() {
+	void newUpdate(SimpleProfiler p) {
 		switch (updates) {
 		case NORMAL:
-			m.calculateCollisions(coor_x, coor_y, this);
+			final SimpleMap map = m;
+			map.calculateCollisions(coor_x, coor_y, this);
 			for (SimpleSolid S : collisions) {
 				if (S != null) {
 					if (S != this) {
-						S.collision(this);
-						collision(S);
+						map.collisionCallbacks += 2;
+						if (p == null) {
+							S.collision(this);
+							collision(S);
+						} else {
+							p.collision(S, this);
+							p.collision(this, S);
+						}
 					}
 				} else {
 					break;
 				}
 			}
 		case NO_COLLIDES:
-			this.update();
+			if (p == null) {
+				this.update();
+			} else {
+				p.update(this);
+			}
 			break;
 		case REMOVED:
 			updates = NORMAL;
@@ -370,6 +473,7 @@ public abstract class SimpleObject {
 	public void setOffset(int off_x, int off_y) {
 		this.off[0] = off_x;
 		this.off[1] = off_y;
+		staticChanged();
 	}
 
 	/**
@@ -406,6 +510,12 @@ public abstract class SimpleObject {
 	 */
 	public boolean removeSelf() {
 		if (drawNext != null && drawPrevious != null) {
+			if (m.statics != null) {
+				m.statics.removed(this);
+			}
+			if (m.journal != null) {
+				m.journal.removed(this);
+			}
 			m = null;
 			drawNext.drawPrevious = drawPrevious;
 			drawPrevious.drawNext = drawNext;
@@ -417,6 +527,9 @@ public abstract class SimpleObject {
 			case NO_COLLIDES:
 				updates = REMOVED_NO_COLLIDES;
 			}
+			if (pool != null) {
+				pool.release(this);
+			}
 			return true;
 		}
 		return false;
@@ -430,6 +543,7 @@ public abstract class SimpleObject {
 	 */
 	public void setImage(Img i) {
 		this.i = i;
+		staticChanged();
 	}
 
 	/**
@@ -0,0 +1,51 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+/**
+ * Creates new SimpleObjects of one type for a SimpleWorldFactory, when the
+ * getClone method of a registered object returns null. The factory makes a
+ * creator for the default constructor of every type it registers, but a
+ * creator can be registered instead for types without one.
+ * 
+ * <pre>
+ * <code>
+ * factory.register(new Door(), new SimpleObjectCreator() {
+ * 		public SimpleObject create() {
+ * 			return new Door(DOOR_IMAGE);
+ * 		}
+ * 	});
+ * </code>
+ * </pre>
+ * 
+ * @author Brian Nakayama
+ * @see SimpleWorldFactory#register(SimpleObject, SimpleObjectCreator)
+ */
+public interface SimpleObjectCreator {
+	/**
+	 * Create a new object.
+	 * 
+	 * @return The new object.
+	 */
+	public SimpleObject create();
+}
@@ -0,0 +1,129 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+/**
+ * Holds removed SimpleObjects of a single type so that they can be reused by
+ * the SimpleWorldFactory instead of being recreated.
+ * 
+ * An object is returned to its pool when {@link SimpleObject#removeSelf()}
+ * succeeds, and taken back out when the factory adds an object with the same
+ * key. Before it is reused the factory calls
+ * {@link SimpleObject#recycle(String)}, so only types overriding that method
+ * are ever reused. Objects released while the pool is full are dropped.
+ * 
+ * Pools should only be used for objects that are not referenced anywhere else
+ * after they are removed (bullets, particles, etc...).
+ * 
+ * @author Brian Nakayama
+ * @see SimpleWorldFactory#setPoolCapacity(int, int)
+ */
+public class SimpleObjectPool {
+
+	private SimpleObject[] free;
+	private int size = 0;
+
+	/**
+	 * Create a pool holding at most capacity objects.
+	 * 
+	 * @param capacity
+	 *            The maximum number of removed objects to hold.
+	 */
+	public SimpleObjectPool(int capacity) {
+		free = new SimpleObject[Math.max(capacity, 0)];
+	}
+
+	/**
+	 * Take an object out of the pool.
+	 * 
+	 * @return A removed object, or null if the pool is empty.
+	 */
+	public SimpleObject acquire() {
+		if (size == 0) {
+			return null;
+		}
+		size--;
+		SimpleObject o = free[size];
+		free[size] = null;
+		return o;
+	}
+
+	/**
+	 * Return an object to the pool. The object must no longer be part of a
+	 * map.
+	 * 
+	 * @param o
+	 *            The removed object.
+	 * @return True iff the object was kept by the pool.
+	 */
+	public boolean release(SimpleObject o) {
+		if (size < free.length && o.m == null) {
+			free[size] = o;
+			size++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Change the maximum number of objects held. Objects beyond the new
+	 * capacity are dropped.
+	 * 
+	 * @param capacity
+	 *            The new capacity.
+	 */
+	public void setCapacity(int capacity) {
+		SimpleObject[] n = new SimpleObject[Math.max(capacity, 0)];
+		size = Math.min(size, n.length);
+		System.arraycopy(free, 0, n, 0, size);
+		free = n;
+	}
+
+	/**
+	 * Get the maximum number of objects held.
+	 * 
+	 * @return The capacity.
+	 */
+	public int getCapacity() {
+		return free.length;
+	}
+
+	/**
+	 * Get the number of objects waiting to be reused.
+	 * 
+	 * @return The number of pooled objects.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Drop every pooled object.
+	 */
+	public void clear() {
+		for (int n = 0; n < size; n++) {
+			free[n] = null;
+		}
+		size = 0;
+	}
+}
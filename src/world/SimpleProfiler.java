@@ -0,0 +1,298 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Times each phase of {@link SimpleWorld#update()} along with the cost of the
+ * update and collision methods of each class of SimpleObject.
+ * 
+ * Phase times are kept for the most recent frames (the window) so that the
+ * distribution of recent frame times can be queried while the game runs. Class
+ * times are totals since the profiler was created or last reset. A profiler is
+ * attached with {@link SimpleWorld#setProfiler(SimpleProfiler)}; a world
+ * without one is not timed at all.
+ * 
+ * @author Brian Nakayama
+ * @see SimpleWorld
+ */
+public class SimpleProfiler {
+
+	// The phases of a frame, in the order that they happen.
+	public static final int CAMERA = 0, BACKGROUND = 1, UPDATE = 2, PAINT = 3,
+			WORLD_OBJECT = 4, CANVAS = 5, TOTAL = 6;
+
+	private static final String[] PHASE_NAMES = { "camera", "background",
+			"update", "paint", "world object", "canvas", "total" };
+
+	// Nanosecond times for each phase in the current window of frames.
+	private final long[][] samples;
+	private final long[] current = new long[TOTAL + 1];
+	private int index = 0, frames = 0;
+	private long start;
+
+	// Totals for each class: update ns, update calls, collision ns, collision
+	// calls. The update loop finds the totals of a class through its slot
+	// without locking; the map only holds them for reading.
+	private final Map<Class<?>, long[]> classes = new HashMap<Class<?>, long[]>();
+	private volatile ClassValue<long[]> slots = newSlots();
+
+	/**
+	 * Create a profiler that remembers the last 256 frames.
+	 */
+	public SimpleProfiler() {
+		this(256);
+	}
+
+	/**
+	 * Create a profiler that remembers a chosen number of frames.
+	 * 
+	 * @param window
+	 *            The number of recent frames to keep.
+	 */
+	public SimpleProfiler(int window) {
+		samples = new long[TOTAL + 1][Math.max(window, 1)];
+	}
+
+	/*
+	 * Called by SimpleWorld at the beginning of the frame.
+	 */
+	void beginFrame() {
+		Arrays.fill(current, 0);
+		start = System.nanoTime();
+	}
+
+	/*
+	 * Called by SimpleWorld at the end of a phase. Returns the current time
+	 * to be used as the beginning of the next phase.
+	 */
+	long endPhase(int phase, long begin) {
+		long now = System.nanoTime();
+		current[phase] += now - begin;
+		return now;
+	}
+
+	/*
+	 * Called by SimpleWorld at the end of the frame.
+	 */
+	void endFrame() {
+		current[TOTAL] = System.nanoTime() - start;
+		synchronized (samples) {
+			for (int p = 0; p <= TOTAL; p++) {
+				samples[p][index] = current[p];
+			}
+			index = (index + 1) % samples[0].length;
+			if (frames < samples[0].length) {
+				frames++;
+			}
+		}
+	}
+
+	/*
+	 * Call the update method of a SimpleObject and add the time spent in it.
+	 */
+	void update(SimpleObject o) {
+		long t = System.nanoTime();
+		o.update();
+		t = System.nanoTime() - t;
+		long[] l = slots.get(o.getClass());
+		l[0] += t;
+		l[1]++;
+	}
+
+	/*
+	 * Call the collision method of a SimpleObject and add the time spent in
+	 * it.
+	 */
+	void collision(SimpleObject o, SimpleObject s) {
+		long t = System.nanoTime();
+		o.collision(s);
+		t = System.nanoTime() - t;
+		long[] l = slots.get(o.getClass());
+		l[2] += t;
+		l[3]++;
+	}
+
+	private ClassValue<long[]> newSlots() {
+		return new ClassValue<long[]>() {
+			@Override
+			protected long[] computeValue(Class<?> c) {
+				long[] l = new long[4];
+				synchronized (classes) {
+					classes.put(c, l);
+				}
+				return l;
+			}
+		};
+	}
+
+	/**
+	 * Get the number of frames currently held in the window.
+	 * 
+	 * @return The number of frames.
+	 */
+	public int getFrames() {
+		return frames;
+	}
+
+	/**
+	 * Get a percentile of the time spent in a phase over the recent frames.
+	 * 
+	 * @param phase
+	 *            CAMERA, BACKGROUND, UPDATE, PAINT, WORLD_OBJECT, CANVAS, or
+	 *            TOTAL.
+	 * @param percentile
+	 *            The percentile [0-100], for example 50 for the median.
+	 * @return The time in nanoseconds, or 0 if no frames have been timed.
+	 */
+	public long getPercentile(int phase, double percentile) {
+		long[] s = getSamples(phase);
+		if (s.length == 0) {
+			return 0;
+		}
+		Arrays.sort(s);
+		int i = (int) Math.ceil(percentile / 100.0 * s.length) - 1;
+		return s[Math.min(Math.max(i, 0), s.length - 1)];
+	}
+
+	/**
+	 * Get the mean time spent in a phase over the recent frames.
+	 * 
+	 * @param phase
+	 *            The phase.
+	 * @return The mean time in nanoseconds.
+	 */
+	public long getMean(int phase) {
+		long[] s = getSamples(phase);
+		if (s.length == 0) {
+			return 0;
+		}
+		long sum = 0;
+		for (long l : s) {
+			sum += l;
+		}
+		return sum / s.length;
+	}
+
+	/**
+	 * Get the times spent in a phase over the recent frames, oldest first.
+	 * 
+	 * @param phase
+	 *            The phase.
+	 * @return A copy of the times in nanoseconds.
+	 */
+	public long[] getSamples(int phase) {
+		synchronized (samples) {
+			long[] s = new long[frames];
+			int first = (index - frames + samples[0].length)
+					% samples[0].length;
+			for (int n = 0; n < frames; n++) {
+				s[n] = samples[phase][(first + n) % samples[0].length];
+			}
+			return s;
+		}
+	}
+
+	/**
+	 * Get the total time spent in the update and collision methods by each
+	 * class since the profiler was created or reset.
+	 * 
+	 * @return A map from each class to { update ns, update calls, collision
+	 *         ns, collision calls }.
+	 */
+	public Map<Class<?>, long[]> getClassTimes() {
+		Map<Class<?>, long[]> copy = new HashMap<Class<?>, long[]>();
+		synchronized (classes) {
+			for (Map.Entry<Class<?>, long[]> e : classes.entrySet()) {
+				copy.put(e.getKey(), e.getValue().clone());
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Forget all of the recorded frames and class times.
+	 */
+	public void reset() {
+		synchronized (samples) {
+			index = 0;
+			frames = 0;
+		}
+		synchronized (classes) {
+			slots = newSlots();
+			classes.clear();
+		}
+	}
+
+	/**
+	 * Write a summary of the recorded times to a file.
+	 * 
+	 * @param f
+	 *            The file to write to. It will be overwritten.
+	 * @return True iff the file was written.
+	 */
+	public boolean dump(File f) {
+		try {
+			PrintWriter pw = new PrintWriter(new FileWriter(f, false));
+			pw.print(toString());
+			pw.close();
+			return !pw.checkError();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * A table of the recorded times in microseconds.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Frames: ").append(frames).append('\n');
+		sb.append("phase, mean us, p50 us, p99 us, max us\n");
+		for (int p = 0; p <= TOTAL; p++) {
+			sb.append(PHASE_NAMES[p]).append(", ")
+					.append(getMean(p) / 1000).append(", ")
+					.append(getPercentile(p, 50) / 1000).append(", ")
+					.append(getPercentile(p, 99) / 1000).append(", ")
+					.append(getPercentile(p, 100) / 1000).append('\n');
+		}
+		sb.append("class, update calls, update us, collision calls, collision us\n");
+		for (Map.Entry<Class<?>, long[]> e : getClassTimes().entrySet()) {
+			long[] l = e.getValue();
+			sb.append(e.getKey().getName()).append(", ").append(l[1])
+					.append(", ").append(l[0] / 1000).append(", ")
+					.append(l[3]).append(", ").append(l[2] / 1000)
+					.append('\n');
+		}
+		return sb.toString();
+	}
+}
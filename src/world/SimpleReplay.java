@@ -0,0 +1,327 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import clock.RandomSource;
+
+/**
+ * Records the input and random numbers that reach a SimpleWorld each frame,
+ * and replays them so the same frames can be simulated again.
+ * 
+ * To record, create the replay before building the map so that random numbers
+ * drawn while building it are recorded too, and attach it to the world:
+ * 
+ * <pre>
+ * <code>
+ * SimpleReplay r = SimpleReplay.record(new File("session.rpl"), seed);
+ * SimpleMap m = ...; // Build the map using RandomSource.
+ * SimpleWorld w = new SimpleWorld(m, dc);
+ * w.setReplay(r);
+ * w.start(false);
+ * ...
+ * r.close();
+ * </code>
+ * </pre>
+ * 
+ * To replay, load the file and build the map the same way. The recorded frames
+ * can then be run as fast as possible with {@link #run(SimpleWorld)}.
+ * 
+ * The format of the file (gzipped) is:
+ * 
+ * &lt; int: version (1) &gt;<br>
+ * &lt; long: seed &gt;<br>
+ * for (frame in frames) do <br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: number of inputs &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int, int, int: type, x, y &gt; for each input<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; int: number of random draws &gt;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&lt; double &gt; for each draw<br>
+ * done.<br>
+ * &lt; int: -1 &gt;
+ * 
+ * @author Brian Nakayama
+ * @see RandomSource
+ * @see InputListener
+ */
+public class SimpleReplay {
+
+	private static final int VERSION = 1;
+
+	private final long seed;
+	private final boolean replaying;
+
+	// Recording.
+	private DataOutputStream dO;
+	private int[] inputs = new int[24];
+	private int inputSize = 0;
+
+	// Replaying, the inputs of each frame and the draws made by the end of it.
+	private int[][] frames;
+	private int[] drawCounts;
+	private int frame = 0;
+
+	private SimpleReplay(long seed, DataOutputStream dO) {
+		this.seed = seed;
+		this.dO = dO;
+		this.replaying = false;
+	}
+
+	private SimpleReplay(long seed, int[][] frames, int[] drawCounts) {
+		this.seed = seed;
+		this.frames = frames;
+		this.drawCounts = drawCounts;
+		this.replaying = true;
+	}
+
+	/**
+	 * Start recording to a file. The shared RandomSource is seeded and every
+	 * number it draws from now on is recorded.
+	 * 
+	 * @param f
+	 *            The file to write. It will be overwritten.
+	 * @param seed
+	 *            The seed for the RandomSource.
+	 * @return The replay, or null if the file couldn't be opened.
+	 */
+	public static SimpleReplay record(File f, long seed) {
+		try {
+			DataOutputStream dO = new DataOutputStream(new GZIPOutputStream(
+					new BufferedOutputStream(new FileOutputStream(f, false))));
+			dO.writeInt(VERSION);
+			dO.writeLong(seed);
+			RandomSource.getInstance().setSeed(seed);
+			RandomSource.getInstance().startRecording();
+			return new SimpleReplay(seed, dO);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Load a recording. The shared RandomSource is seeded and returns the
+	 * recorded numbers from now on.
+	 * 
+	 * @param f
+	 *            The recorded file.
+	 * @return The replay, or null if the file couldn't be read.
+	 */
+	public static SimpleReplay load(File f) {
+		DataInputStream dI = null;
+		try {
+			dI = new DataInputStream(new GZIPInputStream(
+					new BufferedInputStream(new FileInputStream(f))));
+			if (dI.readInt() != VERSION) {
+				System.out.println("Error: Unknown replay version.");
+				return null;
+			}
+			long seed = dI.readLong();
+			List<int[]> frames = new ArrayList<int[]>();
+			List<Integer> counts = new ArrayList<Integer>();
+			double[] draws = new double[64];
+			int size = 0;
+			int n;
+			while ((n = dI.readInt()) >= 0) {
+				int[] in = new int[n * 3];
+				for (int i = 0; i < in.length; i++) {
+					in[i] = dI.readInt();
+				}
+				int d = dI.readInt();
+				if (size + d > draws.length) {
+					draws = Arrays.copyOf(draws, Math.max(size + d,
+							draws.length * 2));
+				}
+				for (int i = 0; i < d; i++) {
+					draws[size++] = dI.readDouble();
+				}
+				frames.add(in);
+				counts.add(size);
+			}
+
+			int[] drawCounts = new int[counts.size()];
+			for (int i = 0; i < drawCounts.length; i++) {
+				drawCounts[i] = counts.get(i);
+			}
+			RandomSource.getInstance().setSeed(seed);
+			RandomSource.getInstance().startReplay(Arrays.copyOf(draws, size));
+			return new SimpleReplay(seed, frames.toArray(new int[frames
+					.size()][]), drawCounts);
+		} catch (IOException e) {
+			System.out.println("Error: Couldn't read replay.");
+			e.printStackTrace();
+			return null;
+		} finally {
+			try {
+				if (dI != null) {
+					dI.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/*
+	 * Called by SimpleWorld for each input delivered while recording.
+	 */
+	void recordInput(int type, int x, int y) {
+		if (inputSize + 3 > inputs.length) {
+			inputs = Arrays.copyOf(inputs, inputs.length * 2);
+		}
+		inputs[inputSize++] = type;
+		inputs[inputSize++] = x;
+		inputs[inputSize++] = y;
+	}
+
+	/*
+	 * Called by SimpleWorld at the beginning of a frame while replaying.
+	 */
+	void replayInputs(InputListener il) {
+		if (frame < frames.length && il != null) {
+			int[] in = frames[frame];
+			for (int i = 0; i < in.length; i += 3) {
+				il.input(in[i], in[i + 1], in[i + 2]);
+			}
+		}
+	}
+
+	/*
+	 * Called by SimpleWorld at the end of each frame.
+	 */
+	void endFrame() {
+		if (replaying) {
+			if (frame < frames.length
+					&& RandomSource.getInstance().getPosition() != drawCounts[frame]) {
+				RandomSource.getInstance().diverge();
+			}
+			frame++;
+		} else if (dO != null) {
+			try {
+				double[] draws = RandomSource.getInstance().takeDraws();
+				dO.writeInt(inputSize / 3);
+				for (int i = 0; i < inputSize; i++) {
+					dO.writeInt(inputs[i]);
+				}
+				dO.writeInt(draws.length);
+				for (double d : draws) {
+					dO.writeDouble(d);
+				}
+				inputSize = 0;
+				frame++;
+			} catch (IOException e) {
+				e.printStackTrace();
+				dO = null;
+			}
+		}
+	}
+
+	/**
+	 * Run every remaining recorded frame of a world as fast as possible,
+	 * without a clock.
+	 * 
+	 * @param w
+	 *            The world rebuilt the same way as the recorded one.
+	 * @return True iff the frames matched the recording.
+	 */
+	public boolean run(SimpleWorld w) {
+		w.setReplay(this);
+		while (frame < frames.length) {
+			w.update();
+		}
+		return !RandomSource.getInstance().isDiverged();
+	}
+
+	/**
+	 * Check if this replay is being played back rather than recorded.
+	 * 
+	 * @return True when replaying.
+	 */
+	public boolean isReplaying() {
+		return replaying;
+	}
+
+	/**
+	 * Check if a replay has run out of recorded frames.
+	 * 
+	 * @return True iff every recorded frame has been replayed.
+	 */
+	public boolean isFinished() {
+		return replaying && frame >= frames.length;
+	}
+
+	/**
+	 * Get the number of frames recorded or replayed so far.
+	 * 
+	 * @return The frame count.
+	 */
+	public int getFrame() {
+		return frame;
+	}
+
+	/**
+	 * Get the seed of the RandomSource for this replay.
+	 * 
+	 * @return The seed.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Finish the recording or replay, and return the RandomSource to
+	 * generating numbers normally.
+	 * 
+	 * @return True iff a recording was written successfully, or the replay
+	 *         matched the recording.
+	 */
+	public boolean close() {
+		boolean ok = !RandomSource.getInstance().isDiverged();
+		RandomSource.getInstance().stop();
+		if (dO != null) {
+			try {
+				dO.writeInt(-1);
+				dO.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+				ok = false;
+			}
+			dO = null;
+		} else if (!replaying) {
+			ok = false;
+		}
+		return ok;
+	}
+}
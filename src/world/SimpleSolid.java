@@ -216,6 +216,7 @@ public abstract class SimpleSolid extends SimpleObject {
 
 			int relY = y / m.cellHeight - coor_y / m.cellWidth;
 
+			journalChanging();
 			pre_cx = coor_x;
 			pre_cy = coor_y;
 			coor_x = x;
@@ -223,11 +224,16 @@ public abstract class SimpleSolid extends SimpleObject {
 
 			m.map[pre_y][pre_cx / m.cellWidth] = null;
 			m.map[new_y][coor_x / m.cellWidth] = this;
+			if (pre_y != new_y || pre_cx / m.cellWidth != coor_x / m.cellWidth) {
+				m.cellChanged(pre_cx / m.cellWidth, pre_y);
+				m.cellChanged(coor_x / m.cellWidth, new_y);
+			}
 
 			/*
 			 * Only if we've made a significant change in the y direction do we
 			 * need to do the complicated sorting part.
 			 */
+			staticChanged();
 			if (relY == 0) {
 				return true;
 			} else {
@@ -242,6 +248,8 @@ public abstract class SimpleSolid extends SimpleObject {
 				return movement;
 			}
 		} else {
+			final SimpleMap map = m;
+			map.rejectedMoves++;
 			switch (fuzz) {
 			default:
 				// If the fuzz parameter is nonzero, and there is at most one
@@ -279,6 +287,7 @@ public abstract class SimpleSolid extends SimpleObject {
 				for (SimpleSolid S : collisions) {
 					if (S != null) {
 						if (S != this) {
+							map.collisionCallbacks += 2;
 							S.collision(this);
 							collision(S);
 						}
@@ -345,6 +354,7 @@ public abstract class SimpleSolid extends SimpleObject {
 			final int x_n = coor_x / m.cellWidth;
 			final int y_n = coor_y / m.cellHeight;
 			m.map[y_n][x_n] = null;
+			m.cellChanged(x_n, y_n);
 			return super.removeSelf();
 		}
 		return false;
@@ -0,0 +1,230 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.nio.BufferUnderflowException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A buffer holding the state of one SimpleObject, written by
+ * {@link SimpleObject#writeState(SimpleState)} and read back by
+ * {@link SimpleObject#readState(SimpleState, int)}. The same buffer is reused
+ * for every object of a save, so writing state allocates nothing once the
+ * buffer has grown to the largest object.
+ * 
+ * Values are read back in the order they were written. Ints, longs, floats
+ * and doubles take a fixed number of bytes, and varints take fewer bytes for
+ * small unsigned values.
+ * 
+ * @author Brian Nakayama
+ * @see SimpleObject#writeState(SimpleState)
+ */
+public class SimpleState {
+
+	byte[] data;
+	int position = 0, limit = 0;
+	// The array written to, which data leaves while reading another array.
+	private byte[] own;
+
+	/**
+	 * Create an empty buffer.
+	 */
+	public SimpleState() {
+		this.data = new byte[64];
+		this.own = data;
+	}
+
+	/*
+	 * Empty the buffer for the next object.
+	 */
+	void clear() {
+		data = own;
+		position = 0;
+		limit = 0;
+	}
+
+	/*
+	 * Read the state of an object from part of an array.
+	 */
+	void wrap(byte[] b, int offset, int length) {
+		data = b;
+		position = offset;
+		limit = offset + length;
+	}
+
+	/**
+	 * Get the number of bytes written, or left to be read.
+	 * 
+	 * @return The number of bytes.
+	 */
+	public int remaining() {
+		return limit - position;
+	}
+
+	private void grow(int n) {
+		if (limit + n > data.length) {
+			data = Arrays.copyOf(data, Math.max(data.length * 2, limit + n));
+			own = data;
+		}
+	}
+
+	private void need(int n) {
+		if (position + n > limit) {
+			throw new BufferUnderflowException();
+		}
+	}
+
+	public void writeByte(int v) {
+		grow(1);
+		data[limit++] = (byte) v;
+	}
+
+	public void writeBoolean(boolean v) {
+		writeByte(v ? 1 : 0);
+	}
+
+	public void writeShort(int v) {
+		grow(2);
+		data[limit++] = (byte) (v >> 8);
+		data[limit++] = (byte) v;
+	}
+
+	public void writeInt(int v) {
+		grow(4);
+		data[limit++] = (byte) (v >> 24);
+		data[limit++] = (byte) (v >> 16);
+		data[limit++] = (byte) (v >> 8);
+		data[limit++] = (byte) v;
+	}
+
+	public void writeLong(long v) {
+		writeInt((int) (v >> 32));
+		writeInt((int) v);
+	}
+
+	public void writeFloat(float v) {
+		writeInt(Float.floatToIntBits(v));
+	}
+
+	public void writeDouble(double v) {
+		writeLong(Double.doubleToLongBits(v));
+	}
+
+	/**
+	 * Write an unsigned int in as few bytes as it needs, 7 bits per byte.
+	 * 
+	 * @param v
+	 *            The value, best for small positive numbers.
+	 */
+	public void writeVarInt(int v) {
+		while ((v & ~0x7F) != 0) {
+			writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		writeByte(v);
+	}
+
+	/**
+	 * Write a String as its length and UTF-8 bytes. Null is written as an
+	 * empty String.
+	 * 
+	 * @param s
+	 *            The String.
+	 */
+	public void writeString(String s) {
+		byte[] b = s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(b.length);
+		grow(b.length);
+		System.arraycopy(b, 0, data, limit, b.length);
+		limit += b.length;
+	}
+
+	public byte readByte() {
+		need(1);
+		return data[position++];
+	}
+
+	public boolean readBoolean() {
+		return readByte() != 0;
+	}
+
+	public short readShort() {
+		need(2);
+		int v = ((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF);
+		position += 2;
+		return (short) v;
+	}
+
+	public int readInt() {
+		need(4);
+		int v = ((data[position] & 0xFF) << 24)
+				| ((data[position + 1] & 0xFF) << 16)
+				| ((data[position + 2] & 0xFF) << 8)
+				| (data[position + 3] & 0xFF);
+		position += 4;
+		return v;
+	}
+
+	public long readLong() {
+		return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+	}
+
+	public float readFloat() {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	public double readDouble() {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	/**
+	 * Read an int written by {@link #writeVarInt(int)}.
+	 * 
+	 * @return The value.
+	 */
+	public int readVarInt() {
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = readByte() & 0xFF;
+			v |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return v;
+			}
+		}
+		throw new IllegalStateException("Malformed varint.");
+	}
+
+	/**
+	 * Read a String written by {@link #writeString(String)}.
+	 * 
+	 * @return The String.
+	 */
+	public String readString() {
+		int n = readVarInt();
+		need(n);
+		String s = new String(data, position, n, StandardCharsets.UTF_8);
+		position += n;
+		return s;
+	}
+}
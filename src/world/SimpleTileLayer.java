@@ -0,0 +1,357 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.util.Arrays;
+
+import sprite.Img;
+import sprite.ImgCanvas;
+
+/**
+ * A grid of tiles drawn as a single object of a SimpleMap. Each cell holds a
+ * short index into a set of images instead of an object of its own, so large
+ * floors and terrain cost two bytes per cell. Only the cells that are on the
+ * screen are drawn.
+ * 
+ * The layer is added to a map with
+ * {@link SimpleMap#addTileLayer(SimpleTileLayer, int)}, and is drawn at the
+ * z-index given there. If the tiles are the same size as the cells of the map,
+ * tile indexes can be marked as blocking. Blocking tiles place a
+ * {@link Block} in the collision grid of the map, so that SimpleSolids
+ * collide with them as they would with any other solid.
+ * 
+ * @author Brian Nakayama
+ */
+public class SimpleTileLayer extends SimpleObject {
+
+	/**
+	 * The index of a cell without a tile.
+	 */
+	public static final short EMPTY = -1;
+
+	private final int width, height, tileWidth, tileHeight;
+	private final short[] tiles;
+	private final Img[] tileSet;
+	private final boolean[] blocking;
+
+	/**
+	 * Create an empty layer of tiles.
+	 * 
+	 * @param width
+	 *            The width of the layer in tiles.
+	 * @param height
+	 *            The height of the layer in tiles.
+	 * @param tileWidth
+	 *            The width of a tile in pixels.
+	 * @param tileHeight
+	 *            The height of a tile in pixels.
+	 * @param tileSet
+	 *            The images that the tile indexes refer to. An index can be no
+	 *            larger than Short.MAX_VALUE.
+	 */
+	public SimpleTileLayer(int width, int height, int tileWidth,
+			int tileHeight, Img[] tileSet) {
+		super(NO_UPDATES_NO_COLLIDES);
+		this.width = width;
+		this.height = height;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		this.tileSet = tileSet;
+		this.blocking = new boolean[tileSet.length];
+		this.tiles = new short[width * height];
+		Arrays.fill(tiles, EMPTY);
+		this.i = new TileImg();
+	}
+
+	/**
+	 * Set the tile of a cell.
+	 * 
+	 * @param x
+	 *            The x cell of the layer.
+	 * @param y
+	 *            The y cell of the layer.
+	 * @param tile
+	 *            The index of the image in the tile set, or EMPTY.
+	 */
+	public void setTile(int x, int y, int tile) {
+		tiles[y * width + x] = (short) tile;
+		if (m != null) {
+			block(x, y);
+		}
+	}
+
+	/**
+	 * Get the tile of a cell.
+	 * 
+	 * @param x
+	 *            The x cell of the layer.
+	 * @param y
+	 *            The y cell of the layer.
+	 * @return The index of the image in the tile set, or EMPTY.
+	 */
+	public int getTile(int x, int y) {
+		return tiles[y * width + x];
+	}
+
+	/**
+	 * Set every cell of the layer at once.
+	 * 
+	 * @param tiles
+	 *            The tile indexes in rows, from the top left cell.
+	 */
+	public void setTiles(short[] tiles) {
+		System.arraycopy(tiles, 0, this.tiles, 0, this.tiles.length);
+		if (m != null) {
+			blockAll();
+		}
+	}
+
+	/**
+	 * Mark the tiles with an index as blocking. This only has an effect if
+	 * the tiles are the same size as the cells of the map.
+	 * 
+	 * @param tile
+	 *            The index of the image in the tile set.
+	 * @param block
+	 *            True if solids cannot pass through the tile.
+	 */
+	public void setBlocking(int tile, boolean block) {
+		blocking[tile] = block;
+		if (m != null) {
+			blockAll();
+		}
+	}
+
+	/**
+	 * @param tile
+	 *            The index of the image in the tile set.
+	 * @return True iff the tiles with this index are blocking.
+	 */
+	public boolean isBlocking(int tile) {
+		return tile >= 0 && tile < blocking.length && blocking[tile];
+	}
+
+	public int getLayerWidth() {
+		return width;
+	}
+
+	public int getLayerHeight() {
+		return height;
+	}
+
+	public int getTileWidth() {
+		return tileWidth;
+	}
+
+	public int getTileHeight() {
+		return tileHeight;
+	}
+
+	/*
+	 * Place or remove the blocker of every cell. Called by SimpleMap when the
+	 * layer is added.
+	 */
+	void blockAll() {
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				block(x, y);
+			}
+		}
+	}
+
+	/*
+	 * Place a blocker in the collision grid if the tile of a cell is blocking,
+	 * or remove the blocker of this layer if it is not.
+	 */
+	private void block(int x, int y) {
+		if (tileWidth != m.cellWidth || tileHeight != m.cellHeight
+				|| y >= m.map.length || x >= m.map[y].length) {
+			return;
+		}
+		SimpleSolid s = m.map[y][x];
+		if (isBlocking(tiles[y * width + x])) {
+			if (s == null) {
+				Block b = new Block(this, x, y);
+				b.m = m;
+				m.map[y][x] = b;
+				m.cellChanged(x, y);
+			}
+		} else if (s instanceof Block && ((Block) s).layer == this) {
+			s.m = null;
+			m.map[y][x] = null;
+			m.cellChanged(x, y);
+		}
+	}
+
+	/**
+	 * Tile layers do not move.
+	 * 
+	 * @return False.
+	 */
+	@Override
+	public boolean move(int x, int y, boolean relative) {
+		return false;
+	}
+
+	/**
+	 * Remove the layer and its blocking tiles from the map.
+	 * 
+	 * @return True if the layer belongs to a map and is removed.
+	 */
+	@Override
+	public boolean removeSelf() {
+		if (m != null) {
+			final SimpleMap map = m;
+			if (super.removeSelf()) {
+				for (int y = 0; y < map.map.length; y++) {
+					for (int x = 0; x < map.map[y].length; x++) {
+						SimpleSolid s = map.map[y][x];
+						if (s instanceof Block && ((Block) s).layer == this) {
+							s.m = null;
+							map.map[y][x] = null;
+							map.cellChanged(x, y);
+						}
+					}
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void collision(SimpleObject s) {
+	}
+
+	@Override
+	public void update() {
+	}
+
+	@Override
+	public int id() {
+		return -1;
+	}
+
+	/**
+	 * The invisible solid that occupies the cell of a blocking tile. Its id is
+	 * the index of the tile, so solids can tell what they collided with.
+	 */
+	public static class Block extends SimpleSolid {
+		private final SimpleTileLayer layer;
+
+		Block(SimpleTileLayer layer, int x, int y) {
+			super(true);
+			this.layer = layer;
+			coor_x = x * layer.tileWidth;
+			coor_y = y * layer.tileHeight;
+			pre_cx = coor_x;
+			pre_cy = coor_y;
+		}
+
+		/**
+		 * @return The layer this tile belongs to.
+		 */
+		public SimpleTileLayer getLayer() {
+			return layer;
+		}
+
+		@Override
+		public void collision(SimpleObject s) {
+		}
+
+		@Override
+		public void update() {
+		}
+
+		@Override
+		public int id() {
+			return layer.tiles[(coor_y / layer.tileHeight) * layer.width
+					+ coor_x / layer.tileWidth];
+		}
+
+		@Override
+		public boolean move(int x, int y, boolean relative) {
+			return false;
+		}
+	}
+
+	/*
+	 * Draws the cells of the layer that are within the clip of the canvas.
+	 * The previous row and column are also drawn, for tile images larger than
+	 * a cell. Animated tiles advance once per frame, however many cells and
+	 * viewports show them.
+	 */
+	private class TileImg extends Img {
+
+		private final int[] clip = new int[4];
+
+		@Override
+		public void drawSlide(int x, int y, ImgCanvas c) {
+			drawStill(x, y, c);
+			skipSlide();
+		}
+
+		@Override
+		public void drawStill(int x, int y, ImgCanvas c) {
+			final int[] r = c.getClip(clip);
+			final int x0 = Math.max(Math.floorDiv(r[0] - x, tileWidth) - 1, 0);
+			final int y0 = Math.max(Math.floorDiv(r[1] - y, tileHeight) - 1, 0);
+			final int x1 = Math.min(
+					Math.floorDiv(r[0] + r[2] - x, tileWidth), width - 1);
+			final int y1 = Math.min(
+					Math.floorDiv(r[1] + r[3] - y, tileHeight), height - 1);
+			for (int ty = y0; ty <= y1; ty++) {
+				int n = ty * width + x0;
+				for (int tx = x0; tx <= x1; tx++, n++) {
+					final short t = tiles[n];
+					if (t >= 0) {
+						tileSet[t].drawStill(x + tx * tileWidth, y + ty
+								* tileHeight, c);
+					}
+				}
+			}
+		}
+
+		@Override
+		public void skipSlide() {
+			for (Img i : tileSet) {
+				i.skipSlide();
+			}
+		}
+
+		@Override
+		public int getWidth() {
+			return width * tileWidth;
+		}
+
+		@Override
+		public int getHeight() {
+			return height * tileHeight;
+		}
+
+		@Override
+		public Img getRotatedInstance(int degree) {
+			return this;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.util.Arrays;
+
+/**
+ * A rectangle of the canvas that shows the map from its own camera. Add
+ * viewports to a SimpleWorld for split screen games: every object is updated
+ * once per frame, and then drawn in each viewport that can see it.
+ * 
+ * @author Brian Nakayama
+ * @see SimpleWorld#addViewport(SimpleViewport)
+ */
+public class SimpleViewport {
+
+	// The region of the canvas.
+	int x, y, width, height;
+	final int[] camera = { 0, 0 };
+	SimpleObject cameraStalk = null;
+	// The objects this viewport can see this frame, in the order they are
+	// drawn.
+	SimpleObject[] visible = new SimpleObject[256];
+	int visibleCount = 0;
+
+	/**
+	 * Create a viewport covering a region of the canvas.
+	 * 
+	 * @param x
+	 *            The x position (in pixels) of the region on the canvas.
+	 * @param y
+	 *            The y position (in pixels) of the region on the canvas.
+	 * @param width
+	 *            The width (in pixels) of the region.
+	 * @param height
+	 *            The height (in pixels) of the region.
+	 */
+	public SimpleViewport(int x, int y, int width, int height) {
+		setRegion(x, y, width, height);
+	}
+
+	/**
+	 * Move or resize the region of the canvas.
+	 * 
+	 * @param x
+	 *            The x position (in pixels) of the region on the canvas.
+	 * @param y
+	 *            The y position (in pixels) of the region on the canvas.
+	 * @param width
+	 *            The width (in pixels) of the region.
+	 * @param height
+	 *            The height (in pixels) of the region.
+	 */
+	public void setRegion(int x, int y, int width, int height) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Set an object for the camera of this viewport to follow.
+	 * 
+	 * @param cameraStalk
+	 *            The object to follow, or null to keep the camera still.
+	 */
+	public void setCameraStalk(SimpleObject cameraStalk) {
+		this.cameraStalk = cameraStalk;
+	}
+
+	/**
+	 * Get the object followed by the camera.
+	 * 
+	 * @return The object, or null if there is none.
+	 */
+	public SimpleObject getCameraStalk() {
+		return cameraStalk;
+	}
+
+	/**
+	 * Set the coordinate of the map shown at the top left of the viewport.
+	 * 
+	 * @param x
+	 *            The new x coordinate.
+	 * @param y
+	 *            The new y coordinate.
+	 */
+	public void setCamera(int x, int y) {
+		camera[0] = x;
+		camera[1] = y;
+	}
+
+	/**
+	 * Get the array that holds the x and y coordinate of the camera.
+	 * 
+	 * @return a 2d array with the x and y coordinate of the camera.
+	 */
+	public int[] getCamera() {
+		return camera;
+	}
+
+	/*
+	 * List an object to be drawn this frame.
+	 */
+	void see(SimpleObject s) {
+		if (visibleCount == visible.length) {
+			visible = Arrays.copyOf(visible, visibleCount * 2);
+		}
+		visible[visibleCount++] = s;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+}
@@ -22,8 +22,16 @@ THE SOFTWARE.
  */
 package world;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import clock.Cinterface;
 import clock.Clock;
+import metrics.EngineMetrics;
 
 import sprite.Img;
 import sprite.ImgCanvas;
@@ -41,6 +49,10 @@ import sprite.NullImg;
 public class SimpleWorld implements Cinterface {
 
 	private Img background = NullImg.getInstance();
+	// The background tiled to cover the canvas plus one tile.
+	private Img bgCache = null;
+	private Img bgCacheSource = null;
+	private int bgCacheWidth, bgCacheHeight;
 	private Clock clock;
 	private final int[] camera = { 0, 0 };
 	private SimpleObject cameraStalk = null;
@@ -49,6 +61,16 @@ public class SimpleWorld implements Cinterface {
 	private SimpleMap m;
 	private SimpleWorldObject swo = NullSimpleWorldObject.getInstance();
 	private boolean update = true;
+	private boolean baking = false;
+	private volatile SimpleProfiler profiler = null;
+	private final ConcurrentLinkedQueue<int[]> inputs = new ConcurrentLinkedQueue<int[]>();
+	private InputListener il = null;
+	private SimpleReplay replay = null;
+	private SimpleFieldOfView fov = null;
+	private final List<SimpleViewport> viewports = new CopyOnWriteArrayList<SimpleViewport>();
+	// The objects drawn in any viewport this frame.
+	private SimpleObject[] shown = new SimpleObject[256];
+	private final ConcurrentLinkedQueue<SimpleMapSave> saves = new ConcurrentLinkedQueue<SimpleMapSave>();
 
 	/**
 	 * Create a SimpleWorld with the desired width and height.
@@ -90,6 +112,52 @@ public class SimpleWorld implements Cinterface {
 	 */
 	public void setSimpleSolidMap(SimpleMap m) {
 		this.m = m;
+		if (baking && m.statics == null) {
+			m.statics = new StaticLayerCache(m, dc);
+		} else if (!baking && m.statics != null) {
+			m.statics.detach();
+			m.statics = null;
+		}
+	}
+
+	/**
+	 * Bake objects that neither update nor collide into cached images, so that
+	 * a large static level is drawn with a few images per frame instead of one
+	 * per object. Static objects are those created with
+	 * {@link SimpleObject#NO_UPDATES_NO_COLLIDES} that do not display an
+	 * animation. Moving a static object, changing its image or removing it
+	 * bakes the part of the map around it again.
+	 * 
+	 * Baked objects are drawn below the dynamic objects of their z-index, even
+	 * if they were added after them. Use a higher z-index for static objects
+	 * that must cover dynamic ones.
+	 * 
+	 * Baking requires a canvas that supports
+	 * {@link ImgCanvas#createBuffer(int, int)}, otherwise the objects are drawn
+	 * normally.
+	 * 
+	 * @param baking
+	 *            True to bake static objects, false to draw every object
+	 *            individually.
+	 */
+	public void setStaticBaking(boolean baking) {
+		this.baking = baking;
+		if (baking) {
+			if (m.statics == null) {
+				m.statics = new StaticLayerCache(m, dc);
+			}
+		} else if (m.statics != null) {
+			m.statics.detach();
+			m.statics = null;
+		}
+	}
+
+	/**
+	 * @return True iff static objects are baked into cached images.
+	 * @see #setStaticBaking(boolean)
+	 */
+	public boolean isStaticBaking() {
+		return baking;
 	}
 
 	/**
@@ -148,7 +216,7 @@ public class SimpleWorld implements Cinterface {
 	 *            The image to be tiled.
 	 */
 	public void setBGImage(Img i) {
-		if (background == null) {
+		if (i == null) {
 			this.background = NullImg.getInstance();
 		} else {
 			this.background = i;
@@ -189,6 +257,259 @@ public class SimpleWorld implements Cinterface {
 		return clock;
 	}
 
+	/**
+	 * Time each phase of the frame along with the update and collision methods
+	 * of every object.
+	 * 
+	 * @param profiler
+	 *            The profiler that receives the times, or null to stop
+	 *            profiling.
+	 * @see SimpleProfiler
+	 */
+	public void setProfiler(SimpleProfiler profiler) {
+		this.profiler = profiler;
+	}
+
+	/**
+	 * Get the profiler timing this world.
+	 * 
+	 * @return The profiler, or null if the world is not being profiled.
+	 */
+	public SimpleProfiler getProfiler() {
+		return profiler;
+	}
+
+	/**
+	 * Set the listener that receives input posted to this world.
+	 * 
+	 * @param il
+	 *            The listener, or null to ignore input.
+	 * @see #postInput(int, int, int)
+	 */
+	public void setInputListener(InputListener il) {
+		this.il = il;
+	}
+
+	/**
+	 * Post an input to the world. This method can be called from any thread
+	 * (for example a key listener). The input is delivered to the
+	 * InputListener at the beginning of the next frame.
+	 * 
+	 * @param type
+	 *            A game specific type, for example a key code.
+	 * @param x
+	 *            The first value of the input.
+	 * @param y
+	 *            The second value of the input.
+	 */
+	public void postInput(int type, int x, int y) {
+		inputs.add(new int[] { type, x, y });
+	}
+
+	/**
+	 * Save the current map without stopping the game. The map is copied at
+	 * the end of the next frame, and written on a background thread. This
+	 * method can be called from any thread.
+	 * 
+	 * @param f
+	 *            The file to save to.
+	 * @param swf
+	 *            The factory of the objects of the map.
+	 * @return The save, which tells when it is done and how far it has come.
+	 * @see SimpleMapSave
+	 */
+	public SimpleMapSave save(File f, SimpleWorldFactory swf) {
+		return save(new SimpleMapSave(f, swf));
+	}
+
+	/**
+	 * Save the current map without stopping the game, compressed with a
+	 * codec.
+	 * 
+	 * @param f
+	 *            The file to save to.
+	 * @param swf
+	 *            The factory of the objects of the map.
+	 * @param codec
+	 *            The codec, for example SimpleCodec.SMALL for a save that
+	 *            will be kept.
+	 * @return The save.
+	 * @see #save(File, SimpleWorldFactory)
+	 */
+	public SimpleMapSave save(File f, SimpleWorldFactory swf, SimpleCodec codec) {
+		return save(new SimpleMapSave(f, swf, codec));
+	}
+
+	private SimpleMapSave save(SimpleMapSave s) {
+		saves.add(s);
+		return s;
+	}
+
+	/**
+	 * Record or replay the input and random numbers of each frame.
+	 * 
+	 * @param replay
+	 *            The replay, or null to stop.
+	 * @see SimpleReplay
+	 */
+	public void setReplay(SimpleReplay replay) {
+		this.replay = replay;
+	}
+
+	/**
+	 * Get the replay recording or replaying this world.
+	 * 
+	 * @return The replay, or null if there is none.
+	 */
+	public SimpleReplay getReplay() {
+		return replay;
+	}
+
+	/**
+	 * Hide the objects in cells that the observers of a field of view can't
+	 * see. The field of view is brought up to date once per frame before the
+	 * objects are drawn. Baked static objects and tile layers are always
+	 * drawn, so the level itself stays visible under the fog.
+	 * 
+	 * @param fov
+	 *            The field of view, or null to draw every object.
+	 * @see SimpleFieldOfView
+	 */
+	public void setFieldOfView(SimpleFieldOfView fov) {
+		this.fov = fov;
+	}
+
+	/**
+	 * Get the field of view hiding objects in this world.
+	 * 
+	 * @return The field of view, or null if every object is drawn.
+	 */
+	public SimpleFieldOfView getFieldOfView() {
+		return fov;
+	}
+
+	/**
+	 * Split the canvas into viewports. While the world has viewports, the
+	 * camera of the world is not used, and each viewport draws the background
+	 * and the objects it can see from its own camera. The viewports are drawn
+	 * in the order they were added, before the SimpleWorldObject.
+	 * 
+	 * @param v
+	 *            The viewport to add.
+	 * @see SimpleViewport
+	 */
+	public void addViewport(SimpleViewport v) {
+		viewports.add(v);
+	}
+
+	/**
+	 * Remove a viewport. Once every viewport is removed the world draws the
+	 * whole canvas from its own camera again.
+	 * 
+	 * @param v
+	 *            The viewport to remove.
+	 * @return True iff the viewport belonged to this world.
+	 */
+	public boolean removeViewport(SimpleViewport v) {
+		return viewports.remove(v);
+	}
+
+	/**
+	 * Get the viewports of this world.
+	 * 
+	 * @return A read only list of the viewports.
+	 */
+	public List<SimpleViewport> getViewports() {
+		return Collections.unmodifiableList(viewports);
+	}
+
+	/*
+	 * Center a camera on an object, keeping the camera within the map.
+	 */
+	private void follow(SimpleObject stalk, int[] camera, int width, int height) {
+		camera[0] = stalk.coor_x - (width - m.cellWidth) / 2;
+		camera[1] = stalk.coor_y - (height - m.cellHeight) / 2;
+		if (camera[0] < 0) {
+			camera[0] = 0;
+		} else {
+			int x;
+			if (camera[0] > (x = m.mapWmax - width + m.cellWidth)) {
+				camera[0] = x;
+			}
+		}
+		if (camera[1] < 0) {
+			camera[1] = 0;
+		} else {
+			int y;
+			if (camera[1] > (y = m.mapHmax - height + m.cellHeight)) {
+				camera[1] = y;
+			}
+		}
+	}
+
+	/*
+	 * Tile the background over a region of the canvas. The cached tiling
+	 * covers the whole canvas, so it covers any viewport as well.
+	 */
+	private void drawBackground(int[] camera, int left, int top, int width,
+			int height) {
+		if (background == NullImg.getInstance()) {
+			return;
+		}
+		int bg_width = background.getWidth();
+		int bg_height = background.getHeight();
+		int cWidth = dc.getWidth();
+		int cHeight = dc.getHeight();
+		// Re-tile only when the image or the canvas size changes.
+		if (bgCacheSource != background || bgCacheWidth != cWidth
+				|| bgCacheHeight != cHeight) {
+			bgCacheSource = background;
+			bgCacheWidth = cWidth;
+			bgCacheHeight = cHeight;
+			bgCache = null;
+			if (cWidth > 0 && cHeight > 0) {
+				bgCache = background.getTiledInstance(
+						(cWidth / bg_width + 2) * bg_width,
+						(cHeight / bg_height + 2) * bg_height);
+			}
+		}
+		// The offset of the image must decrease as the camera's position
+		// increases.
+		if (bgCache != null) {
+			bgCache.drawSlide(left + -camera[0] % -bg_width, top + -camera[1]
+					% -bg_height, dc);
+		} else {
+			for (int x = (-camera[0] % -bg_width); x < width; x += bg_width) {
+				for (int y = (-camera[1] % -bg_height); y < height; y += bg_height) {
+					background.drawSlide(left + x, top + y, dc);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Draw the objects listed for a viewport without advancing their images,
+	 * and return how many were drawn.
+	 */
+	private int paint(SimpleViewport v, StaticLayerCache statics) {
+		final int[] camera = v.camera;
+		final SimpleObject[] visible = v.visible;
+		int drawn = 0;
+		for (int n = 0; n < v.visibleCount; n++) {
+			SimpleObject s = visible[n];
+			visible[n] = null;
+			if (s.baked) {
+				statics.draw(s, camera, v.x, v.y, v.width, v.height, dc);
+			} else {
+				s.i.drawStill(v.x + s.coor_x + s.off[0] - camera[0], v.y
+						+ s.coor_y + s.off[1] - camera[1], dc);
+				drawn++;
+			}
+		}
+		v.visibleCount = 0;
+		return drawn;
+	}
+
 	/**
 	 * Inherited method, not for intended for direct use.
 	 * 
@@ -198,63 +519,189 @@ public class SimpleWorld implements Cinterface {
 	 */
 	@Override
 	public void update() {
+		final SimpleProfiler p = profiler;
+		long t = 0;
+		if (p != null) {
+			p.beginFrame();
+			t = System.nanoTime();
+		}
 
-		// Update camera coordinates based off of the width and height.
-		if (cameraStalk != null) {
-			int width = dc.getWidth();
-			int height = dc.getHeight();
-
-			camera[0] = cameraStalk.coor_x - (width - m.cellWidth) / 2;
-			camera[1] = cameraStalk.coor_y - (height - m.cellHeight) / 2;
-			if (camera[0] < 0) {
-				camera[0] = 0;
-			} else {
-				int x;
-				if (camera[0] > (x = m.mapWmax - width + m.cellWidth)) {
-					camera[0] = x;
+		// Deliver the input for this frame.
+		final SimpleReplay r = replay;
+		if (r != null && r.isReplaying()) {
+			inputs.clear();
+			r.replayInputs(il);
+		} else {
+			int[] in;
+			while ((in = inputs.poll()) != null) {
+				if (r != null) {
+					r.recordInput(in[0], in[1], in[2]);
 				}
-			}
-			if (camera[1] < 0) {
-				camera[1] = 0;
-			} else {
-				int y;
-				if (camera[1] > (y = m.mapHmax - height + m.cellHeight)) {
-					camera[1] = y;
+				if (il != null) {
+					il.input(in[0], in[1], in[2]);
 				}
 			}
 		}
 
-		// Draw in the background.
-		if (background != NullImg.getInstance()) {
-			int bg_width = background.getWidth();
-			int bg_height = background.getHeight();
-			// The offset of the image must decrease as the camera's position
-			// increases.
-			for (int x = (-camera[0] % -bg_width); x < dc.getWidth(); x += bg_width) {
-				for (int y = (-camera[1] % -bg_height); y < dc
-						.getHeight(); y += bg_height) {
-					background.drawSlide(x, y, dc);
+		// Update camera coordinates based off of the width and height.
+		final boolean split = !viewports.isEmpty();
+		if (split) {
+			for (SimpleViewport v : viewports) {
+				if (v.cameraStalk != null) {
+					follow(v.cameraStalk, v.camera, v.width, v.height);
 				}
 			}
+		} else if (cameraStalk != null) {
+			follow(cameraStalk, camera, dc.getWidth(), dc.getHeight());
+		}
+
+		if (p != null) {
+			t = p.endPhase(SimpleProfiler.CAMERA, t);
+		}
+
+		// Draw in the background. Viewports draw theirs when they are painted.
+		if (!split) {
+			drawBackground(camera, 0, 0, dc.getWidth(), dc.getHeight());
+		}
+
+		if (p != null) {
+			t = p.endPhase(SimpleProfiler.BACKGROUND, t);
 		}
 
 		// Update all objects.
+		int updated = 0, drawn = 0;
 		if (update) {
 			for (SimpleObject s = m.getDrawBegin(); s != null; s = s.updateNext) {
-				s.newUpdate();
+				s.newUpdate(p);
+				updated++;
+			}
+			if (p != null) {
+				t = p.endPhase(SimpleProfiler.UPDATE, t);
 			}
 		}
 
 		// Paint all objects.
-		for (SimpleObject s = m.getDrawBegin(); s != null; s = s.drawNext) {
-			s.updateNext = s.drawNext;
-			s.i.drawSlide(s.coor_x + s.off[0] - camera[0], s.coor_y + s.off[1]
-					- camera[1], dc);
+		final StaticLayerCache statics = m.statics;
+		final SimpleFieldOfView fov = this.fov;
+		if (fov != null) {
+			fov.update();
+		}
+		if (split) {
+			if (statics != null) {
+				statics.prepare();
+			}
+			// Walk the objects once, listing each for the viewports that can
+			// see it, and advancing the images of those that none can see.
+			int count = 0;
+			SimpleObject[] shown = this.shown;
+			for (SimpleObject s = m.getDrawBegin(); s != null; s = s.drawNext) {
+				s.updateNext = s.drawNext;
+				if (s.baked) {
+					// Sentinels are baked without a chunk, and draw theirs.
+					if (s.chunk == null) {
+						for (SimpleViewport v : viewports) {
+							v.see(s);
+						}
+					}
+					s.i.skipSlide();
+					continue;
+				}
+				boolean seen = false;
+				if (s.i != NullImg.getInstance()
+						&& (fov == null || fov.isVisible(s))) {
+					final int sx = s.coor_x + s.off[0];
+					final int sy = s.coor_y + s.off[1];
+					final int w = s.i.getWidth(), h = s.i.getHeight();
+					for (SimpleViewport v : viewports) {
+						final int x = sx - v.camera[0], y = sy - v.camera[1];
+						if (x < v.width && y < v.height && x + w > 0
+								&& y + h > 0) {
+							v.see(s);
+							seen = true;
+						}
+					}
+				}
+				if (!seen) {
+					s.i.skipSlide();
+				} else {
+					if (count == shown.length) {
+						shown = this.shown = Arrays.copyOf(shown, count * 2);
+					}
+					shown[count++] = s;
+				}
+			}
+			for (SimpleViewport v : viewports) {
+				dc.setClip(v.x, v.y, v.width, v.height);
+				drawBackground(v.camera, v.x, v.y, v.width, v.height);
+				drawn += paint(v, statics);
+			}
+			dc.setClip(0, 0, dc.getWidth(), dc.getHeight());
+			// Advance the images that were drawn once, however many
+			// viewports drew them.
+			for (int n = 0; n < count; n++) {
+				shown[n].i.skipSlide();
+				shown[n] = null;
+			}
+		} else if (statics == null && fov == null) {
+			for (SimpleObject s = m.getDrawBegin(); s != null; s = s.drawNext) {
+				s.updateNext = s.drawNext;
+				s.i.drawSlide(s.coor_x + s.off[0] - camera[0], s.coor_y
+						+ s.off[1] - camera[1], dc);
+				drawn++;
+			}
+		} else {
+			if (statics != null) {
+				statics.prepare();
+			}
+			for (SimpleObject s = m.getDrawBegin(); s != null; s = s.drawNext) {
+				s.updateNext = s.drawNext;
+				if (s.baked) {
+					// Sentinels are baked without a chunk, and draw theirs.
+					if (s.chunk == null) {
+						statics.draw(s, camera, 0, 0, dc.getWidth(),
+								dc.getHeight(), dc);
+					}
+				} else if (fov != null && !fov.isVisible(s)) {
+					s.i.skipSlide();
+				} else {
+					s.i.drawSlide(s.coor_x + s.off[0] - camera[0], s.coor_y
+							+ s.off[1] - camera[1], dc);
+					drawn++;
+				}
+			}
+		}
+
+		if (p != null) {
+			t = p.endPhase(SimpleProfiler.PAINT, t);
 		}
 
 		// Update the world object last.
 		swo.update();
+		if (p != null) {
+			t = p.endPhase(SimpleProfiler.WORLD_OBJECT, t);
+		}
 		dc.paint();
+		if (p != null) {
+			p.endPhase(SimpleProfiler.CANVAS, t);
+			p.endFrame();
+		}
+
+		// Publish the counts for this frame.
+		EngineMetrics.getInstance().tick(updated, drawn, m.collisionChecks,
+				m.rejectedMoves, m.collisionCallbacks);
+		m.collisionChecks = 0;
+		m.rejectedMoves = 0;
+		m.collisionCallbacks = 0;
+
+		if (r != null) {
+			r.endFrame();
+		}
+
+		// Copy the map for any saves between frames.
+		SimpleMapSave save;
+		while ((save = saves.poll()) != null) {
+			save.start(m);
+		}
 	}
 
 	/**
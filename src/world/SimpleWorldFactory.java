@@ -22,12 +22,30 @@ THE SOFTWARE.
  */
 package world;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import sprite.Img;
 
@@ -39,9 +57,28 @@ import sprite.Img;
  */
 public class SimpleWorldFactory {
 
-	// Hold each object along with a key.
-	List<SimpleObject> objects = new ArrayList<SimpleObject>();
-	Map<Class<?>, Integer> object_map = new HashMap<Class<?>, Integer>();
+	/**
+	 * The name of the index of SimpleObject classes written next to the
+	 * classes of a package.
+	 * 
+	 * @see #loadPackage(String)
+	 * @see #loadIndex(String)
+	 */
+	public static final String INDEX = "SimpleObjects.index";
+
+	// Hold each object along with a key. Objects registered by name are null
+	// until their key is first used.
+	List<SimpleObject> objects = new CopyOnWriteArrayList<SimpleObject>();
+	Map<Class<?>, Integer> object_map = new ConcurrentHashMap<Class<?>, Integer>();
+	// Create new objects by key, made once for each class when registered.
+	List<SimpleObjectCreator> creators = new CopyOnWriteArrayList<SimpleObjectCreator>();
+	// The class names of keys that have not been loaded, and their keys.
+	List<String> names = new CopyOnWriteArrayList<String>();
+	Map<String, Integer> name_map = new ConcurrentHashMap<String, Integer>();
+	// The key of each class, cached in the class itself by getKey.
+	private volatile ClassValue<Integer> keys = newKeys();
+	// Pools of removed objects to reuse, by class.
+	Map<Class<?>, SimpleObjectPool> pools = new HashMap<Class<?>, SimpleObjectPool>();
 
 	public SimpleWorldFactory() {
 
@@ -49,16 +86,17 @@ public class SimpleWorldFactory {
 
 	/**
 	 * Create a SimpleWorldFactory with pre-registered SimpleObjects. The string
-	 * should be generated using {@link #toString()}
+	 * should be generated using {@link #toString()}. Each class is loaded the
+	 * first time its key is used.
 	 * 
 	 * @param s
-	 *            A String holding the canonical names of SimpleObjects
-	 *            separated by semicolons.
+	 *            A String holding the names of SimpleObjects separated by
+	 *            semicolons.
 	 */
 	public SimpleWorldFactory(String s) {
-		String[] classes = s.split(";");
+		String[] classes = s.length() == 0 ? new String[0] : s.split(";");
 		for (int i = 0; i < classes.length; i++) {
-			register(classes[i]);
+			registerName(classes[i]);
 		}
 	}
 
@@ -66,34 +104,235 @@ public class SimpleWorldFactory {
 	 * Loads all of the compiled SimpleObject *.class files in a package with
 	 * the directory URL. This method will not load any inner classes.
 	 * 
+	 * The names of the classes are read from the index in the directory, and
+	 * each class is loaded the first time its key is used. If there is no
+	 * index, or a class file is newer than the index, the directory is
+	 * searched for SimpleObjects and the index is written again.
+	 * 
 	 * @param directory
 	 *            the URL of the package
 	 * @return True if and only if all of the SimpleObject classes were registered as
 	 *         SimpleObjects.
+	 * @see #writeIndex(String)
 	 */
 	public boolean loadPackage(String directory) {
 		File dir = new File(directory);
 		if (dir.isDirectory()) {
-			File[] classes = dir.listFiles(new FilenameFilter() {
-				public boolean accept(File directory, String fileName) {
-					return fileName.endsWith(".class");
+			File index = new File(dir, INDEX);
+			List<String> classes = new ArrayList<String>();
+			if (index.exists()) {
+				try {
+					classes = readIndex(new FileInputStream(index));
+				} catch (IOException e) {
+					e.printStackTrace();
 				}
-			});
-			for (File f : classes) {
-				String path = f.getParentFile().getName() + "." + f.getName();
-				if (!path.contains("$")) {
-					//Get rid of .class
-					path = path.substring(0, path.length() - 6);
-					register(path);
+			}
+			if (!index.exists() || index.lastModified() < newest(dir)) {
+				// Keep the keys of classes already in the index.
+				List<String> found = scan(dir);
+				classes.retainAll(found);
+				for (String name : found) {
+					if (!classes.contains(name)) {
+						classes.add(name);
+					}
 				}
+				writeIndex(index, classes);
+			}
+			for (String name : classes) {
+				registerName(name);
 			}
 		} else {
 			return false;
 		}
 		return true;
 	}
-	
-	
+
+	/**
+	 * Loads the SimpleObjects named by the index of a package on the class
+	 * path, for example inside a jar. Each class is loaded the first time its
+	 * key is used.
+	 * 
+	 * @param packageName
+	 *            The name of the package, for example "game.objects".
+	 * @return True if and only if the index was found and read.
+	 * @see #writeIndex(String)
+	 */
+	public boolean loadIndex(String packageName) {
+		String path = packageName.replace('.', '/') + "/" + INDEX;
+		InputStream in = SimpleWorldFactory.class.getClassLoader()
+				.getResourceAsStream(path);
+		if (in == null) {
+			System.out.println("Error: No index at " + path + ".");
+			return false;
+		}
+		try {
+			for (String name : readIndex(in)) {
+				registerName(name);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Search a directory of compiled classes for SimpleObjects, and write
+	 * their names to the index of the directory. Call this when building a
+	 * package, so that the index is packed along with the classes.
+	 * 
+	 * @param directory
+	 *            The directory of the package.
+	 * @return True if and only if the index was written.
+	 */
+	public static boolean writeIndex(String directory) {
+		File dir = new File(directory);
+		if (!dir.isDirectory()) {
+			return false;
+		}
+		return writeIndex(new File(dir, INDEX), scan(dir));
+	}
+
+	private static boolean writeIndex(File index, List<String> classes) {
+		try {
+			Writer w = new OutputStreamWriter(new FileOutputStream(index),
+					StandardCharsets.UTF_8);
+			for (String name : classes) {
+				w.write(name);
+				w.write('\n');
+			}
+			w.close();
+			return true;
+		} catch (IOException e) {
+			System.out.println("Error: Couldn't write " + index.getPath() + ".");
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	private static List<String> readIndex(InputStream in) throws IOException {
+		List<String> classes = new ArrayList<String>();
+		BufferedReader r = new BufferedReader(new InputStreamReader(in,
+				StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = r.readLine()) != null) {
+				line = line.trim();
+				if (line.length() > 0 && !line.startsWith("#")) {
+					classes.add(line);
+				}
+			}
+		} finally {
+			r.close();
+		}
+		return classes;
+	}
+
+	private static File[] classFiles(File dir) {
+		return dir.listFiles(new FilenameFilter() {
+			public boolean accept(File directory, String fileName) {
+				return fileName.endsWith(".class") && !fileName.contains("$");
+			}
+		});
+	}
+
+	private static long newest(File dir) {
+		long newest = 0;
+		for (File f : classFiles(dir)) {
+			newest = Math.max(newest, f.lastModified());
+		}
+		return newest;
+	}
+
+	/*
+	 * Find the SimpleObjects of a directory without initializing them. The
+	 * package of a class is found by adding parent directories to its name
+	 * until the class loads.
+	 */
+	private static List<String> scan(File dir) {
+		List<String> classes = new ArrayList<String>();
+		ClassLoader loader = SimpleWorldFactory.class.getClassLoader();
+		for (File f : classFiles(dir)) {
+			//Get rid of .class
+			String name = f.getName().substring(0, f.getName().length() - 6);
+			Class<?> type = null;
+			for (File p = f.getParentFile(); type == null && p != null; p = p
+					.getParentFile()) {
+				name = p.getName() + "." + name;
+				try {
+					type = Class.forName(name, false, loader);
+				} catch (ClassNotFoundException e) {
+				} catch (LinkageError e) {
+				}
+			}
+			if (type != null && SimpleObject.class.isAssignableFrom(type)
+					&& !Modifier.isAbstract(type.getModifiers())) {
+				classes.add(type.getName());
+			}
+		}
+		return classes;
+	}
+
+	/*
+	 * Register a class by name, without loading it.
+	 */
+	void registerName(String name) {
+		if (name.length() == 0) {
+			// Keep the key of a class that couldn't be saved.
+			objects.add(null);
+			creators.add(NULL_CREATOR);
+			names.add(null);
+		} else if (!name_map.containsKey(name)) {
+			for (Class<?> type : object_map.keySet()) {
+				if (type.getName().equals(name)) {
+					return;
+				}
+			}
+			objects.add(null);
+			creators.add(NULL_CREATOR);
+			names.add(name);
+			name_map.put(name, objects.size() - 1);
+		}
+	}
+
+	/*
+	 * Get the object registered with a key, loading its class the first time.
+	 */
+	private SimpleObject template(int c) {
+		SimpleObject n = objects.get(c);
+		if (n == null) {
+			n = load(c);
+		}
+		return n;
+	}
+
+	private synchronized SimpleObject load(int c) {
+		SimpleObject n = objects.get(c);
+		String name = names.get(c);
+		if (n == null && name != null) {
+			try {
+				Class<?> type = Class.forName(name);
+				SimpleObjectCreator k = creator(type);
+				n = k.create();
+				if (n != null) {
+					// The creator is published before the object.
+					creators.set(c, k);
+					objects.set(c, n);
+					object_map.put(type, c);
+					keys.remove(type);
+				} else {
+					System.out.println("Could not create: " + name);
+				}
+			} catch (Exception e) {
+				System.out.println("Could not retrieve file: " + name);
+			}
+			if (n == null) {
+				// Don't try again.
+				names.set(c, null);
+			}
+		}
+		return n;
+	}
 
 	/**
 	 * Registers a SimpleObject with a key.
@@ -103,9 +342,35 @@ public class SimpleWorldFactory {
 	 * @see SimpleObject
 	 */
 	public boolean register(SimpleObject o) {
+		return register(o, creator(o.getClass()));
+	}
+
+	/**
+	 * Registers a SimpleObject with a key, and the creator used for new
+	 * objects of its type when getClone returns null.
+	 * 
+	 * @param o
+	 *            The SimpleObject to add.
+	 * @param c
+	 *            The creator of new objects of the same type.
+	 * @return True if and only if the object was registered.
+	 * @see SimpleObjectCreator
+	 */
+	public boolean register(SimpleObject o, SimpleObjectCreator c) {
 		if (!object_map.containsKey(o.getClass())) {
-			objects.add(o);
-			object_map.put(o.getClass(), objects.size() - 1);
+			Integer key = name_map.get(o.getClass().getName());
+			if (key != null) {
+				// Fill the key of a class registered by name.
+				creators.set(key, c);
+				objects.set(key, o);
+			} else {
+				objects.add(o);
+				creators.add(c);
+				names.add(null);
+				key = objects.size() - 1;
+			}
+			object_map.put(o.getClass(), key);
+			keys.remove(o.getClass());
 			return true;
 		}
 		return false;
@@ -122,8 +387,13 @@ public class SimpleWorldFactory {
 		boolean registered = true;
 		try {
 			Class<?> Simp = Class.forName(o);
-			objects.add((SimpleObject) Simp.newInstance());
-			object_map.put(Simp, objects.size() - 1);
+			SimpleObjectCreator c = creator(Simp);
+			SimpleObject n = c.create();
+			if (n == null) {
+				System.out.println("Could not create: " + o);
+				return false;
+			}
+			registered = register(n, c);
 		} catch (Exception e) {
 			System.out.println("Could not retrieve file: " + o);
 			registered = false;
@@ -141,14 +411,76 @@ public class SimpleWorldFactory {
 	public void registerReplace(List<SimpleObject> o) {
 		if (!objects.contains(o)) {
 			objects = o;
-			object_map = new HashMap<Class<?>, Integer>();
+			object_map = new ConcurrentHashMap<Class<?>, Integer>();
+			creators = new CopyOnWriteArrayList<SimpleObjectCreator>();
+			names = new CopyOnWriteArrayList<String>();
+			name_map = new ConcurrentHashMap<String, Integer>();
+			keys = newKeys();
 
 			for (int i = 0; i < objects.size(); i++) {
 				object_map.put(objects.get(i).getClass(), i);
+				creators.add(creator(objects.get(i).getClass()));
+				names.add(null);
+			}
+		}
+	}
+
+	/*
+	 * Make a creator for the default constructor of a class, so that objects
+	 * are created without reflection. A creator is first generated like a
+	 * lambda, and then falls back to a method handle for constructors that
+	 * are not public. Classes without a default constructor get a creator that
+	 * returns null.
+	 */
+	private static SimpleObjectCreator creator(Class<?> type) {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle h;
+		try {
+			h = lookup.findConstructor(type, MethodType.methodType(void.class));
+		} catch (IllegalAccessException e) {
+			try {
+				Constructor<?> c = type.getDeclaredConstructor();
+				c.setAccessible(true);
+				h = lookup.unreflectConstructor(c);
+			} catch (Exception e1) {
+				return NULL_CREATOR;
 			}
+		} catch (NoSuchMethodException e) {
+			return NULL_CREATOR;
+		}
+
+		try {
+			CallSite site = LambdaMetafactory.metafactory(lookup, "create",
+					MethodType.methodType(SimpleObjectCreator.class),
+					MethodType.methodType(SimpleObject.class), h,
+					MethodType.methodType(type));
+			return (SimpleObjectCreator) site.getTarget().invoke();
+		} catch (Throwable e) {
+			// Use the method handle directly.
 		}
+
+		final MethodHandle g = h.asType(MethodType
+				.methodType(SimpleObject.class));
+		return new SimpleObjectCreator() {
+			@Override
+			public SimpleObject create() {
+				try {
+					return (SimpleObject) g.invokeExact();
+				} catch (Throwable e) {
+					e.printStackTrace();
+					return null;
+				}
+			}
+		};
 	}
 
+	private static final SimpleObjectCreator NULL_CREATOR = new SimpleObjectCreator() {
+		@Override
+		public SimpleObject create() {
+			return null;
+		}
+	};
+
 	/**
 	 * Get the image used by the object corresponding to the key.
 	 * 
@@ -157,7 +489,8 @@ public class SimpleWorldFactory {
 	 * @return The image.
 	 */
 	public Img previewKey(int c) {
-		return objects.get(c).getImage();
+		SimpleObject n = template(c);
+		return n == null ? null : n.getImage();
 	}
 
 	/**
@@ -179,11 +512,59 @@ public class SimpleWorldFactory {
 	}
 
 	/**
-	 * Gets the list of SimpleObjects currently stored.
+	 * Reuse removed objects of the type with the key c. Objects created by this
+	 * factory with the key c return to a pool when removed, and are reused by
+	 * {@link #addSimpleObject(int, int, int, String, SimpleMap)} if their
+	 * {@link SimpleObject#recycle(String)} method returns true.
+	 * 
+	 * @param c
+	 *            The key for the SimpleObject.
+	 * @param capacity
+	 *            The maximum number of removed objects kept. Use 0 to stop
+	 *            pooling.
+	 * @see SimpleObjectPool
+	 */
+	public void setPoolCapacity(int c, int capacity) {
+		SimpleObject n = template(c);
+		if (n == null) {
+			return;
+		}
+		Class<?> type = n.getClass();
+		SimpleObjectPool p = pools.get(type);
+		if (p == null) {
+			if (capacity > 0) {
+				pools.put(type, new SimpleObjectPool(capacity));
+			}
+		} else if (capacity > 0) {
+			p.setCapacity(capacity);
+		} else {
+			p.clear();
+			pools.remove(type);
+		}
+	}
+
+	/**
+	 * Get the pool of removed objects for the key c.
+	 * 
+	 * @param c
+	 *            The key for the SimpleObject.
+	 * @return The pool, or null if objects with the key c are not pooled.
+	 */
+	public SimpleObjectPool getPool(int c) {
+		SimpleObject n = template(c);
+		return n == null ? null : pools.get(n.getClass());
+	}
+
+	/**
+	 * Gets the list of SimpleObjects currently stored. Every class registered
+	 * by name is loaded first.
 	 * 
 	 * @return The list of SimpleObjects
 	 */
 	public List<SimpleObject> getList() {
+		for (int c = 0; c < objects.size(); c++) {
+			template(c);
+		}
 		return objects;
 	}
 
@@ -205,10 +586,38 @@ public class SimpleWorldFactory {
 	 * @return The internal key of the object o. Returns -1 if o is not stored.
 	 */
 	public int getKey(SimpleObject o) {
-		if (object_map.containsKey(o.getClass())) {
-			return object_map.get(o.getClass());
+		return keys.get(o.getClass());
+	}
+
+	private ClassValue<Integer> newKeys() {
+		return new ClassValue<Integer>() {
+			@Override
+			protected Integer computeValue(Class<?> type) {
+				Integer key = object_map.get(type);
+				if (key == null) {
+					// The class may be registered by name and not yet loaded.
+					key = name_map.get(type.getName());
+				}
+				return key == null ? -1 : key;
+			}
+		};
+	}
+
+	/**
+	 * Get the name of the class registered with a key, without loading it.
+	 * 
+	 * @param c
+	 *            The key.
+	 * @return The binary name of the class, as used by Class.forName, or an
+	 *         empty String if the class couldn't be loaded.
+	 */
+	public String getName(int c) {
+		SimpleObject o = objects.get(c);
+		if (o != null) {
+			return o.getClass().getName();
 		}
-		return -1;
+		String name = names.get(c);
+		return name == null ? "" : name;
 	}
 
 	/**
@@ -220,11 +629,48 @@ public class SimpleWorldFactory {
 	 */
 	@Override
 	public String toString() {
-		String s = "";
-		for (SimpleObject o : objects) {
-			s += o.getClass().getCanonicalName() + ";";
+		StringBuilder s = new StringBuilder();
+		for (int c = 0; c < objects.size(); c++) {
+			s.append(getName(c)).append(';');
 		}
-		return s;
+		return s.toString();
+	}
+
+	/**
+	 * Create a new SimpleObject without adding it to a map, using either the
+	 * default constructor (if getClone returns null) or the getClone method.
+	 * Removed objects are not reused, so this method is safe to call from
+	 * several threads as long as the getClone methods are.
+	 * 
+	 * @param c
+	 *            The key for the SimpleObject.
+	 * @param s
+	 *            The String passed into the getClone method.
+	 * @return The new object, or null if it couldn't be created.
+	 */
+	public SimpleObject createSimpleObject(int c, String s) {
+		SimpleObject n = template(c);
+		if (n == null) {
+			return null;
+		}
+		SimpleObject o = create(c, n, s);
+		if (o != null) {
+			o.pool = pools.get(n.getClass());
+		}
+		return o;
+	}
+
+	private SimpleObject create(int c, SimpleObject n, String s) {
+		SimpleObject o = n.getClone(s);
+		if (o == null) {
+			// Objects added to the list directly have no creator yet.
+			if (c < creators.size()) {
+				o = creators.get(c).create();
+			} else {
+				o = creator(n.getClass()).create();
+			}
+		}
+		return o;
 	}
 
 	/**
@@ -245,25 +691,29 @@ public class SimpleWorldFactory {
 	 * @return True iff the object was added.
 	 */
 	public boolean addSimpleObject(int c, int x, int y, String s, SimpleMap m) {
-		boolean successful = false;
-		SimpleObject n = objects.get(c);
+		SimpleObject n = template(c);
 		if (n == null) {
 			return false;
 		}
-		SimpleObject o = n.getClone(s);
+		SimpleObjectPool p = pools.get(n.getClass());
+		SimpleObject o = null;
+		if (p != null) {
+			// Objects that can't be reset are dropped from the pool.
+			while ((o = p.acquire()) != null && !o.recycle(s)) {
+			}
+		}
 		if (o == null) {
-			try {
-				SimpleObject newO = n.getClass().newInstance();
-				successful = m.addSimpleObject(newO, x, y);
-			} catch (InstantiationException e) {
-				e.printStackTrace();
-			} catch (IllegalAccessException e) {
-				e.printStackTrace();
+			o = create(c, n, s);
+			if (o == null) {
+				return false;
 			}
-		} else {
-			successful = m.addSimpleObject(o, x, y);
 		}
+		o.pool = p;
 
+		boolean successful = m.addSimpleObject(o, x, y);
+		if (!successful && p != null) {
+			p.release(o);
+		}
 		return successful;
 	}
 }
@@ -0,0 +1,345 @@
+/*The MIT License (MIT)
+
+Copyright (c) 2014 Brian Nakayama
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package world;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import sprite.Anm;
+import sprite.Img;
+import sprite.ImgBuffer;
+import sprite.ImgCanvas;
+import sprite.NullImg;
+
+/**
+ * Bakes the static objects of a SimpleMap into cached chunk images.
+ * 
+ * An object is static if it was created with NO_UPDATES_NO_COLLIDES and its
+ * image is not an animation. Static objects are grouped by their segment of
+ * the draw list, either a z-index or a row of solids, and by chunks of CHUNK x
+ * CHUNK pixels. The chunks of a z-index are drawn at the beginning of that
+ * z-index, and the chunks of a row of solids are drawn at the end of the row,
+ * so every object keeps its order relative to the other z-indexes and rows.
+ * 
+ * Within a z-index, baked objects are always drawn below every dynamic object
+ * of that z-index, whatever order they were added in. Give a static object a
+ * higher z-index than the dynamic objects it must cover.
+ * 
+ * Adding, removing, moving or changing the image of a static object marks its
+ * chunk as dirty, and dirty chunks are baked again before the next frame.
+ * 
+ * @author Brian Nakayama
+ * @see SimpleWorld#setStaticBaking(boolean)
+ */
+class StaticLayerCache {
+
+	// The width and height of a chunk in pixels.
+	static final int CHUNK = 256;
+
+	static class Chunk {
+		final int segment;
+		final int key;
+		Img img;
+		int x, y, width, height;
+		boolean dirty = true;
+		final List<SimpleObject> pending = new ArrayList<SimpleObject>();
+
+		Chunk(int segment, int key) {
+			this.segment = segment;
+			this.key = key;
+		}
+	}
+
+	private final SimpleMap m;
+	private final ImgCanvas dc;
+	// The chunks of each segment: z-indexes first, then rows of solids.
+	private final List<Map<Integer, Chunk>> segments;
+	private final boolean[] dirty;
+	private boolean anyDirty = true;
+	// How many chunks a baked image reaches past the chunk of its objects.
+	private int reach = 1;
+
+	StaticLayerCache(SimpleMap m, ImgCanvas dc) {
+		this.m = m;
+		this.dc = dc;
+		int count = m.zArray.length + m.mapArray.length;
+		segments = new ArrayList<Map<Integer, Chunk>>(count);
+		for (int n = 0; n < count; n++) {
+			segments.add(new HashMap<Integer, Chunk>());
+		}
+		dirty = new boolean[count];
+		attach();
+	}
+
+	static boolean isStatic(SimpleObject o) {
+		return o.updates == SimpleObject.NO_UPDATES_NO_COLLIDES
+				&& o.i != NullImg.getInstance() && !(o.i instanceof Anm)
+				&& !(o instanceof SimpleTileLayer);
+	}
+
+	/*
+	 * Mark the sentinels of each segment so that SimpleWorld draws the chunks
+	 * when it reaches them, and bake everything again.
+	 */
+	void attach() {
+		for (int z = 0; z < m.zArray.length; z++) {
+			mark(m.zArray[z], z);
+		}
+		for (int y = 0; y < m.mapArray.length; y++) {
+			mark(m.mapArray[y], m.zArray.length + y);
+		}
+		for (int n = 0; n < dirty.length; n++) {
+			segments.get(n).clear();
+			dirty[n] = true;
+		}
+		anyDirty = true;
+		reach = 1;
+		// Give the objects already in the map a chunk to be collected into.
+		for (SimpleObject s = m.getDrawBegin(); s != null; s = s.drawNext) {
+			if (!(s instanceof StaticSimpleObject)) {
+				added(s);
+			}
+		}
+	}
+
+	private void mark(SimpleObject sentinel, int segment) {
+		sentinel.baked = true;
+		((StaticSimpleObject) sentinel).segment = segment;
+	}
+
+	/*
+	 * Draw every object individually again.
+	 */
+	void detach() {
+		for (SimpleObject s = m.getDrawBegin(); s != null; s = s.drawNext) {
+			s.baked = false;
+			s.chunk = null;
+		}
+		for (Map<Integer, Chunk> chunks : segments) {
+			chunks.clear();
+		}
+	}
+
+	private int segment(SimpleObject o) {
+		if (o.getSolid() != null) {
+			return m.zArray.length + o.coor_y / m.cellHeight;
+		}
+		return o.z;
+	}
+
+	private static int key(int x, int y) {
+		return (Math.floorDiv(y, CHUNK) << 16)
+				| (Math.floorDiv(x, CHUNK) & 0xFFFF);
+	}
+
+	private void invalidate(Chunk c) {
+		if (c != null) {
+			c.dirty = true;
+			dirty[c.segment] = true;
+			anyDirty = true;
+		}
+	}
+
+	private void invalidate(SimpleObject o) {
+		int segment = segment(o);
+		Map<Integer, Chunk> chunks = segments.get(segment);
+		int key = key(o.coor_x, o.coor_y);
+		Chunk c = chunks.get(key);
+		if (c == null) {
+			c = new Chunk(segment, key);
+			chunks.put(key, c);
+		}
+		invalidate(c);
+	}
+
+	/*
+	 * Called when an object has been added to the map.
+	 */
+	void added(SimpleObject o) {
+		o.baked = false;
+		o.chunk = null;
+		if (isStatic(o)) {
+			invalidate(o);
+		}
+	}
+
+	/*
+	 * Called before an object is removed from the map.
+	 */
+	void removed(SimpleObject o) {
+		invalidate(o.chunk);
+		o.baked = false;
+		o.chunk = null;
+	}
+
+	/*
+	 * Called after the position or image of a static object has changed.
+	 */
+	void changed(SimpleObject o) {
+		invalidate(o.chunk);
+		invalidate(o);
+	}
+
+	/*
+	 * Bake every dirty chunk. Called by SimpleWorld before the paint loop.
+	 */
+	void prepare() {
+		if (!anyDirty) {
+			return;
+		}
+		anyDirty = false;
+		for (int z = 0; z < m.zArray.length; z++) {
+			if (dirty[z]) {
+				dirty[z] = false;
+				SimpleObject end = z + 1 < m.zArray.length ? m.zArray[z + 1]
+						: null;
+				for (SimpleObject s = m.zArray[z].drawNext; s != end
+						&& s != m.mapArray[0] && s.getSolid() == null; s = s.drawNext) {
+					collect(z, s);
+				}
+				bake(z);
+			}
+		}
+		for (int y = 0; y < m.mapArray.length; y++) {
+			int segment = m.zArray.length + y;
+			if (dirty[segment]) {
+				dirty[segment] = false;
+				for (SimpleSolid s : m.map[y]) {
+					if (s != null) {
+						collect(segment, s);
+					}
+				}
+				bake(segment);
+			}
+		}
+	}
+
+	private void collect(int segment, SimpleObject o) {
+		Chunk c = segments.get(segment).get(key(o.coor_x, o.coor_y));
+		if (c == null || !c.dirty) {
+			return;
+		}
+		if (isStatic(o)) {
+			c.pending.add(o);
+			o.baked = true;
+			o.chunk = c;
+		} else {
+			o.baked = false;
+			o.chunk = null;
+		}
+	}
+
+	private void bake(int segment) {
+		Iterator<Chunk> chunks = segments.get(segment).values().iterator();
+		while (chunks.hasNext()) {
+			Chunk c = chunks.next();
+			if (!c.dirty) {
+				continue;
+			}
+			c.dirty = false;
+			c.img = null;
+			if (c.pending.isEmpty()) {
+				chunks.remove();
+				continue;
+			}
+
+			int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE;
+			int x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+			for (SimpleObject o : c.pending) {
+				int x = o.coor_x + o.off[0], y = o.coor_y + o.off[1];
+				x0 = Math.min(x0, x);
+				y0 = Math.min(y0, y);
+				x1 = Math.max(x1, x + o.i.getWidth());
+				y1 = Math.max(y1, y + o.i.getHeight());
+			}
+
+			ImgBuffer b = dc.createBuffer(x1 - x0, y1 - y0);
+			if (b == null) {
+				// The canvas can't bake, so draw the objects normally.
+				for (SimpleObject o : c.pending) {
+					o.baked = false;
+					o.chunk = null;
+				}
+			} else {
+				for (SimpleObject o : c.pending) {
+					o.i.drawSlide(o.coor_x + o.off[0] - x0, o.coor_y + o.off[1]
+							- y0, b);
+				}
+				b.dispose();
+				c.img = b.getImg();
+				c.x = x0;
+				c.y = y0;
+				c.width = x1 - x0;
+				c.height = y1 - y0;
+
+				// Objects are keyed by their cell, but their images can hang
+				// over into other chunks, so draw() must look that far.
+				int cx = (short) (c.key & 0xFFFF) * CHUNK;
+				int cy = (c.key >> 16) * CHUNK;
+				int over = Math.max(Math.max(cx - x0, x1 - cx - CHUNK),
+						Math.max(cy - y0, y1 - cy - CHUNK));
+				reach = Math.max(reach, (over + CHUNK - 1) / CHUNK);
+			}
+			c.pending.clear();
+		}
+	}
+
+	/*
+	 * Draw the chunks that belong to the segment of a sentinel and are within
+	 * a region of the canvas.
+	 */
+	void draw(SimpleObject sentinel, int[] camera, int left, int top,
+			int width, int height, ImgCanvas dc) {
+		if (!(sentinel instanceof StaticSimpleObject)) {
+			return;
+		}
+		int segment = ((StaticSimpleObject) sentinel).segment;
+		if (segment < 0) {
+			return;
+		}
+		Map<Integer, Chunk> chunks = segments.get(segment);
+		if (chunks.isEmpty()) {
+			return;
+		}
+		int cx0 = Math.floorDiv(camera[0], CHUNK) - reach;
+		int cx1 = Math.floorDiv(camera[0] + width, CHUNK) + reach;
+		int cy0 = Math.floorDiv(camera[1], CHUNK) - reach;
+		int cy1 = Math.floorDiv(camera[1] + height, CHUNK) + reach;
+		for (int cy = cy0; cy <= cy1; cy++) {
+			for (int cx = cx0; cx <= cx1; cx++) {
+				Chunk c = chunks.get((cy << 16) | (cx & 0xFFFF));
+				if (c != null && c.img != null
+						&& c.x - camera[0] < width
+						&& c.x + c.width - camera[0] > 0
+						&& c.y - camera[1] < height
+						&& c.y + c.height - camera[1] > 0) {
+					c.img.drawSlide(left + c.x - camera[0], top + c.y
+							- camera[1], dc);
+				}
+			}
+		}
+	}
+}
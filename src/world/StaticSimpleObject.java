@@ -30,6 +30,9 @@ package world;
  */
 public class StaticSimpleObject extends SimpleObject{
 
+	// The segment of a StaticLayerCache drawn at this sentinel, if any.
+	int segment = -1;
+
 	public StaticSimpleObject(){
 		super(NO_UPDATES_NO_COLLIDES);
 	}